@@ -0,0 +1,8 @@
+package com.example.springboot.Enum;
+
+public enum ChecksumType {
+    // 速度快，用于发现传输损坏
+    CRC32C,
+    // 浏览器可用 crypto.subtle 直接计算
+    SHA256
+}
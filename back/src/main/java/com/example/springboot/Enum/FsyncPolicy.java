@@ -0,0 +1,10 @@
+package com.example.springboot.Enum;
+
+public enum FsyncPolicy {
+    // 每次追加后立即刷盘
+    ALWAYS,
+    // 后台按固定间隔刷盘，同一间隔内的写入共享一次刷盘
+    INTERVAL,
+    // 只写入映射内存，由操作系统决定何时刷盘（可抵御进程崩溃，不能抵御断电）
+    NONE
+}
@@ -0,0 +1,5 @@
+package com.example.springboot.Enum;
+
+public enum MergeStatus {
+    PENDING, RUNNING, DONE, FAILED
+}
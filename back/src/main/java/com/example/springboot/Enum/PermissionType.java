@@ -1,6 +1,28 @@
 package com.example.springboot.Enum;
 
 public enum PermissionType {
-    READ, DELETE, SHARE
-}
+    READ(1), DELETE(2), SHARE(4);
+
+    // file_acl.permissions 中对应的位
+    private final int bit;
+
+    PermissionType(int bit) {
+        this.bit = bit;
+    }
 
+    public int bit() {
+        return bit;
+    }
+
+    public boolean isIn(int mask) {
+        return (mask & bit) != 0;
+    }
+
+    public static int maskOf(PermissionType... types) {
+        int mask = 0;
+        for (PermissionType type : types) {
+            mask |= type.bit;
+        }
+        return mask;
+    }
+}
@@ -9,6 +9,17 @@ public class FileProperties {
     
     private String uploadDir;
     private String avatarDir;
+    // 缩略图缓存目录及容量上限（字节），超出后按最近最少使用淘汰
+    private String thumbnailDir = "data/thumbnails";
+    private long thumbnailCacheMaxBytes = 256L * 1024 * 1024;
+    // 按 SHA-256 去重存放上传内容的目录
+    private String blobDir = "data/blobs";
+    // 内存中缓存的头像字节上限
+    private long avatarCacheMaxBytes = 16L * 1024 * 1024;
+    // 文件权限判定缓存：关闭后每次判定都查询数据库，用于对比
+    private boolean aclCacheEnabled = true;
+    private long aclCacheTtlMs = 60_000;
+    private int aclCacheMaxEntries = 100_000;
     
     public String getUploadDir() {
         return uploadDir;
@@ -25,4 +36,60 @@ public class FileProperties {
     public void setAvatarDir(String avatarDir) {
         this.avatarDir = avatarDir;
     }
+    
+    public String getThumbnailDir() {
+        return thumbnailDir;
+    }
+    
+    public void setThumbnailDir(String thumbnailDir) {
+        this.thumbnailDir = thumbnailDir;
+    }
+    
+    public long getThumbnailCacheMaxBytes() {
+        return thumbnailCacheMaxBytes;
+    }
+    
+    public void setThumbnailCacheMaxBytes(long thumbnailCacheMaxBytes) {
+        this.thumbnailCacheMaxBytes = thumbnailCacheMaxBytes;
+    }
+    
+    public String getBlobDir() {
+        return blobDir;
+    }
+    
+    public void setBlobDir(String blobDir) {
+        this.blobDir = blobDir;
+    }
+    
+    public long getAvatarCacheMaxBytes() {
+        return avatarCacheMaxBytes;
+    }
+    
+    public void setAvatarCacheMaxBytes(long avatarCacheMaxBytes) {
+        this.avatarCacheMaxBytes = avatarCacheMaxBytes;
+    }
+    
+    public boolean isAclCacheEnabled() {
+        return aclCacheEnabled;
+    }
+    
+    public void setAclCacheEnabled(boolean aclCacheEnabled) {
+        this.aclCacheEnabled = aclCacheEnabled;
+    }
+    
+    public long getAclCacheTtlMs() {
+        return aclCacheTtlMs;
+    }
+    
+    public void setAclCacheTtlMs(long aclCacheTtlMs) {
+        this.aclCacheTtlMs = aclCacheTtlMs;
+    }
+    
+    public int getAclCacheMaxEntries() {
+        return aclCacheMaxEntries;
+    }
+    
+    public void setAclCacheMaxEntries(int aclCacheMaxEntries) {
+        this.aclCacheMaxEntries = aclCacheMaxEntries;
+    }
 }
@@ -0,0 +1,121 @@
+package com.example.springboot.config;
+
+import com.example.springboot.Enum.FsyncPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "message")
+public class MessageProperties {
+
+    // 开启后消息先入内存日志，由后台线程批量写入数据库
+    private boolean writeBehind = false;
+    // 每批最多写入的消息数
+    private int batchSize = 200;
+    // 攒批的最长等待时间（毫秒）
+    private long flushIntervalMs = 5;
+    // 内存日志（待写库队列）容量，写满后发送方等待
+    private int journalCapacity = 10000;
+    // 每次从数据库预分配的消息 ID 数量
+    private int idBlockSize = 1000;
+    // 发送方等待消息落库的最长时间（毫秒）
+    private long ackTimeoutMs = 5000;
+    // 开启本地追加日志：消息刷入日志即向发送方确认，再由后台写入数据库（隐含开启 write-behind）
+    private boolean journalEnabled = false;
+    // 本地日志目录
+    private String journalDir = "data/message-journal";
+    // 单个日志段文件大小（字节）
+    private int journalSegmentSize = 64 * 1024 * 1024;
+    // 日志刷盘策略
+    private FsyncPolicy journalFsyncPolicy = FsyncPolicy.INTERVAL;
+    // INTERVAL 策略下的刷盘间隔（毫秒）
+    private long journalFsyncIntervalMs = 2;
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public int getJournalCapacity() {
+        return journalCapacity;
+    }
+
+    public void setJournalCapacity(int journalCapacity) {
+        this.journalCapacity = journalCapacity;
+    }
+
+    public int getIdBlockSize() {
+        return idBlockSize;
+    }
+
+    public void setIdBlockSize(int idBlockSize) {
+        this.idBlockSize = idBlockSize;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public int getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    public void setJournalSegmentSize(int journalSegmentSize) {
+        this.journalSegmentSize = journalSegmentSize;
+    }
+
+    public FsyncPolicy getJournalFsyncPolicy() {
+        return journalFsyncPolicy;
+    }
+
+    public void setJournalFsyncPolicy(FsyncPolicy journalFsyncPolicy) {
+        this.journalFsyncPolicy = journalFsyncPolicy;
+    }
+
+    public long getJournalFsyncIntervalMs() {
+        return journalFsyncIntervalMs;
+    }
+
+    public void setJournalFsyncIntervalMs(long journalFsyncIntervalMs) {
+        this.journalFsyncIntervalMs = journalFsyncIntervalMs;
+    }
+
+    public long getAckTimeoutMs() {
+        return ackTimeoutMs;
+    }
+
+    public void setAckTimeoutMs(long ackTimeoutMs) {
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+}
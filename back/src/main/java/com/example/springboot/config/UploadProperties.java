@@ -0,0 +1,60 @@
+package com.example.springboot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "upload")
+public class UploadProperties {
+
+    // 所有合并任务共享的分片拷贝线程数
+    private int mergeParallelism = 4;
+    // 同时执行的合并任务数
+    private int mergeJobThreads = 2;
+    // 已结束的合并任务状态保留时间，超时后不再可查询
+    private long mergeJobRetentionMs = 10 * 60 * 1000;
+    // 上传会话超过该时间没有活动即视为放弃，由后台清理
+    private long sessionTtlMs = 24 * 60 * 60 * 1000;
+    // 每个用户未完成上传占用的字节数上限，小于等于 0 表示不限制
+    private long userQuotaBytes = 10L * 1024 * 1024 * 1024;
+
+    public int getMergeParallelism() {
+        return mergeParallelism;
+    }
+
+    public void setMergeParallelism(int mergeParallelism) {
+        this.mergeParallelism = mergeParallelism;
+    }
+
+    public int getMergeJobThreads() {
+        return mergeJobThreads;
+    }
+
+    public void setMergeJobThreads(int mergeJobThreads) {
+        this.mergeJobThreads = mergeJobThreads;
+    }
+
+    public long getMergeJobRetentionMs() {
+        return mergeJobRetentionMs;
+    }
+
+    public void setMergeJobRetentionMs(long mergeJobRetentionMs) {
+        this.mergeJobRetentionMs = mergeJobRetentionMs;
+    }
+
+    public long getSessionTtlMs() {
+        return sessionTtlMs;
+    }
+
+    public void setSessionTtlMs(long sessionTtlMs) {
+        this.sessionTtlMs = sessionTtlMs;
+    }
+
+    public long getUserQuotaBytes() {
+        return userQuotaBytes;
+    }
+
+    public void setUserQuotaBytes(long userQuotaBytes) {
+        this.userQuotaBytes = userQuotaBytes;
+    }
+}
\ No newline at end of file
@@ -1,23 +1,35 @@
 package com.example.springboot.config;
 
 
+import com.example.springboot.interceptor.AuthPrincipalArgumentResolver;
 import com.example.springboot.interceptor.JwtInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.*;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     @Autowired
     private JwtInterceptor jwtInterceptor;
     
+    @Autowired
+    private AuthPrincipalArgumentResolver authPrincipalArgumentResolver;
+    
     @Autowired
     private FileProperties fileProperties;@Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(jwtInterceptor)
                 .addPathPatterns("/**")
                 .excludePathPatterns("/user/register","/user/login","/uploads/**");
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(authPrincipalArgumentResolver);
     }    @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // 配置静态资源映射，用于访问上传的文件
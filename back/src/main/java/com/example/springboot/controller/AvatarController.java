@@ -0,0 +1,48 @@
+package com.example.springboot.controller;
+
+import com.example.springboot.service.AvatarService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 处理后的头像，路径在 /uploads/** 下，与原有头像一样无需登录即可访问
+ */
+@RestController
+public class AvatarController {
+    private final AvatarService avatarService;
+
+    public AvatarController(AvatarService avatarService) {
+        this.avatarService = avatarService;
+    }
+
+    @GetMapping(AvatarService.URL_PREFIX + "{name}")
+    public ResponseEntity<byte[]> avatar(
+            @PathVariable String name,
+            @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch) throws IOException {
+        // 文件名带内容版本号，URL 对应的内容不会变化
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        String etag = "\"" + name + "\"";
+        // 只对确实存在的头像返回 304，伪造的文件名仍然得到 404
+        if (etag.equals(ifNoneMatch) && avatarService.exists(name)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+        byte[] bytes = avatarService.load(name);
+        if (bytes == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .contentType(MediaType.IMAGE_JPEG)
+                .body(bytes);
+    }
+}
@@ -1,100 +1,154 @@
 package com.example.springboot.controller;
 
+import com.example.springboot.service.ChunkMergeService;
 import com.example.springboot.service.ChunkUploadService;
-import com.example.springboot.service.UserService;
+import com.example.springboot.service.MergeJob;
 import com.example.springboot.service.FileService;
-import com.example.springboot.entity.User;
+import com.example.springboot.dto.AuthPrincipal;
 import com.example.springboot.entity.fileStorage;
+import com.example.springboot.Enum.ChecksumType;
 import com.example.springboot.Enum.FileType;
-import com.example.springboot.utils.JwtUtil;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.NoSuchFileException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/upload1")
 public class ChunkUploadController {
-    private final UserService userService;
     private final FileService fileService;
     private final ChunkUploadService chunkService;
+    private final ChunkMergeService mergeService;
 
-    public ChunkUploadController(UserService userService,
-                                 FileService fileService,
-                                 ChunkUploadService chunkService) {
-        this.userService = userService;
+    public ChunkUploadController(FileService fileService,
+                                 ChunkUploadService chunkService,
+                                 ChunkMergeService mergeService) {
         this.fileService = fileService;
         this.chunkService = chunkService;
+        this.mergeService = mergeService;
     }
 
-    private Integer extractUserIdFromToken(String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
-        return user.getId();
-    }
-
-    private boolean isValidToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) return false;
-        return JwtUtil.validateToken(authHeader.substring(7));
+    /**
+     * 直写模式：声明文件总大小与分片大小，之后的分片直接写入预分配的目标文件
+     * 返回已接收的分片序号，重复调用可用于断点续传
+     */
+    @PostMapping("/init")
+    public ResponseEntity<?> init(
+            AuthPrincipal principal,
+            @RequestParam String fileId,
+            @RequestParam long totalSize,
+            @RequestParam int chunkSize) throws IOException {
+        try {
+            List<Integer> uploaded = chunkService.initDirectUpload(fileId, principal.getUserId(), totalSize, chunkSize);
+            return ResponseEntity.ok(uploaded);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
     }
 
     @GetMapping("/status")
     public ResponseEntity<?> status(
-            @RequestHeader("Authorization") String authHeader,
+            AuthPrincipal principal,
             @RequestParam String fileId) throws IOException {
-        if (!isValidToken(authHeader))
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
-        extractUserIdFromToken(authHeader);
+        try {
+            List<Integer> uploaded = chunkService.listUploadedChunks(fileId, principal.getUserId());
+            return ResponseEntity.ok(uploaded);
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not the owner of this upload");
+        }
+    }
 
-        List<Integer> uploaded = chunkService.listUploadedChunks(fileId);
-        return ResponseEntity.ok(uploaded);
+    /**
+     * 上传会话概要（已接收分片数、字节数、最后活动时间），只读内存中的会话状态
+     */
+    @GetMapping("/session")
+    public ResponseEntity<?> session(
+            AuthPrincipal principal,
+            @RequestParam String fileId) throws IOException {
+        try {
+            Map<String, Object> summary = chunkService.sessionSummary(fileId, principal.getUserId());
+            if (summary == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload session not found");
+            }
+            return ResponseEntity.ok(summary);
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not the owner of this upload");
+        }
     }
 
     @PostMapping("/chunk")
     public ResponseEntity<?> uploadChunk(
-            @RequestHeader("Authorization") String authHeader,
+            AuthPrincipal principal,
             @RequestParam String fileId,
             @RequestParam int chunkIndex,
+            @RequestParam(required = false) Integer totalChunks,
+            @RequestParam(required = false) String checksum,
+            @RequestParam(defaultValue = "CRC32C") ChecksumType checksumType,
             @RequestParam MultipartFile chunk) throws IOException {
-        if (!isValidToken(authHeader))
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");        extractUserIdFromToken(authHeader);
-
-        chunkService.saveChunk(fileId, chunkIndex, chunk.getInputStream());
+        if (!chunkService.withinQuota(principal.getUserId(), chunk.getSize())) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body("Upload quota exceeded");
+        }
+        try {
+            chunkService.saveChunk(fileId, principal.getUserId(), chunkIndex, totalChunks,
+                    checksum, checksumType, chunk.getInputStream());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not the owner of this upload");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
         return ResponseEntity.ok("Chunk saved");
     }
 
     @PostMapping("/merge")
     public ResponseEntity<?> merge(
-            @RequestHeader("Authorization") String authHeader,
+            AuthPrincipal principal,
             @RequestParam String fileId,
-            @RequestParam String filename) throws IOException {
-        if (!isValidToken(authHeader))
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
-        extractUserIdFromToken(authHeader);
-
+            @RequestParam String filename,
+            @RequestParam(required = false) FileType file_type) throws IOException {
         try {
-            chunkService.mergeChunks(fileId, filename);
+            // 传入文件类型时在后台合并并登记为用户文件，立即返回任务，客户端轮询 /merge/status
+            if (file_type != null) {
+                MergeJob job = mergeService.submit(principal.getUserId(), fileId, filename, file_type);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+            }
+            chunkService.mergeChunks(fileId, principal.getUserId(), filename);
             return ResponseEntity.ok("Merge OK");
         } catch (NoSuchFileException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Chunks not found");
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not the owner of this upload");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/merge/status")
+    public ResponseEntity<?> mergeStatus(
+            AuthPrincipal principal,
+            @RequestParam String jobId) {
+        MergeJob job = mergeService.getJob(jobId, principal.getUserId());
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Merge job not found");
         }
+        return ResponseEntity.ok(job);
     }
 
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(
-            @RequestHeader("Authorization") String authHeader,
+            AuthPrincipal principal,
             @RequestParam MultipartFile file,
             @RequestParam(required = false) String file_name,
             @RequestParam FileType file_type,
             @RequestParam long file_size) {
-        if (!isValidToken(authHeader))
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
-        Integer userId = extractUserIdFromToken(authHeader);
+        Integer userId = principal.getUserId();
         try {
             fileStorage stored = fileService.uploadFile(userId, file, file_name, file_type, file_size);
             return ResponseEntity.ok(stored);        } catch (IOException e) {
@@ -1,11 +1,9 @@
 package com.example.springboot.controller;
 
 import com.example.springboot.common.Result;
+import com.example.springboot.dto.AuthPrincipal;
 import com.example.springboot.dto.FriendRequestDto;
-import com.example.springboot.entity.User;
 import com.example.springboot.service.ContactService;
-import com.example.springboot.service.UserService;
-import com.example.springboot.utils.JwtUtil;
 import jakarta.annotation.Resource;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,23 +16,18 @@ public class ContactController {
 
     @Resource
     private ContactService contactService;
-    @Resource
-    private UserService userService;
 
     /**
      * 发送好友请求
-     * @param tokenHeader
+     * @param principal
      * @param request
      * @return
      */
     @PostMapping("/request")
-    public Result sendFriendRequest(@RequestHeader("Authorization") String tokenHeader,
+    public Result sendFriendRequest(AuthPrincipal principal,
                                     @RequestBody Map<String, Object> request) {
         Integer toUserId = (Integer) request.get("userId");
-        String token = tokenHeader.replace("Bearer ","");
-        String fromUsername = JwtUtil.getUsernameFromToken(token);
-        User fromUser = userService.getUserInformation(fromUsername);
-        Integer fromUserId = fromUser.getId();
+        Integer fromUserId = principal.getUserId();
         try {
             contactService.sendFriendRequest(fromUserId, toUserId);
             return Result.success();
@@ -58,11 +51,8 @@ public class ContactController {
      */
 
     @GetMapping("/requests")
-    public Result getPendingRequests(@RequestHeader("Authorization") String tokenHeader) {
-        String token = tokenHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
-        List<FriendRequestDto> requests = contactService.getPendingRequests(user.getId());
+    public Result getPendingRequests(AuthPrincipal principal) {
+        List<FriendRequestDto> requests = contactService.getPendingRequests(principal.getUserId());
         return Result.success(requests);
     }
 
@@ -70,12 +60,9 @@ public class ContactController {
      * 同意好友请求
      */
     @PostMapping("/requests/accept")
-    public Result acceptRequest(@RequestHeader("Authorization") String tokenHeader, @RequestBody Map<String, Object> body) {
-        String token = tokenHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
+    public Result acceptRequest(AuthPrincipal principal, @RequestBody Map<String, Object> body) {
         Integer fromUserId = (Integer) body.get("fromUserId");
-        contactService.acceptFriendRequest(fromUserId, user.getId());
+        contactService.acceptFriendRequest(fromUserId, principal.getUserId());
         return Result.success();
     }
 
@@ -83,15 +70,12 @@ public class ContactController {
      *
      */
     @PostMapping("/requests/reject")
-    public Result rejectRequest(@RequestHeader("Authorization") String tokenHeader,
+    public Result rejectRequest(AuthPrincipal principal,
                                 @RequestBody Map<String, Object> body) {
-        String token = tokenHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
         Integer fromUserId = (Integer) body.get("fromUserId");
 
         try {
-            contactService.rejectFriendRequest(fromUserId, user.getId());
+            contactService.rejectFriendRequest(fromUserId, principal.getUserId());
             return Result.success("好友请求已拒绝");
         } catch (RuntimeException e) {
             return Result.error();
@@ -102,11 +86,8 @@ public class ContactController {
      * 获取好友列表
      */
     @GetMapping("/list")
-    public Result getFriendList(@RequestHeader("Authorization") String tokenHeader) {
-        String token = tokenHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
-        List<Map<String, Object>> friends = contactService.getFriendList(user.getId());
+    public Result getFriendList(AuthPrincipal principal) {
+        List<Map<String, Object>> friends = contactService.getFriendList(principal.getUserId());
         return Result.success(friends);
     }
 
@@ -114,14 +95,11 @@ public class ContactController {
      * 删除好友
      */
     @DeleteMapping("/{friendId}")
-    public Result deleteFriend(@RequestHeader("Authorization") String tokenHeader,
+    public Result deleteFriend(AuthPrincipal principal,
                              @PathVariable Integer friendId) {
-        String token = tokenHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
 
         try {
-            contactService.deleteFriend(user.getId(), friendId);
+            contactService.deleteFriend(principal.getUserId(), friendId);
             return Result.success("删除好友成功");
         } catch (RuntimeException e) {
             return Result.error(e.getMessage());
@@ -1,15 +1,14 @@
 package com.example.springboot.controller;
 
 import com.example.springboot.common.Result;
+import com.example.springboot.dto.AuthPrincipal;
 import com.example.springboot.dto.E2EEKeyDto;
 import com.example.springboot.dto.EncryptedMessageDto;
 import com.example.springboot.dto.MessageDto;
 import com.example.springboot.service.E2EEService;
-import com.example.springboot.utils.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpServletRequest;
 import java.util.Map;
 
 @RestController
@@ -23,14 +22,9 @@ public class E2EEController {
      * Update user's E2EE settings (public key and enable/disable E2EE)
      */
     @PostMapping("/settings")
-    public Result updateE2EESettings(@RequestBody E2EEKeyDto e2eeKeyDto, HttpServletRequest request) {
+    public Result updateE2EESettings(@RequestBody E2EEKeyDto e2eeKeyDto, AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization");
-            if (token != null && token.startsWith("Bearer ")) {
-                token = token.substring(7);
-            }
-            
-            String username = JwtUtil.getUsernameFromToken(token);
+            String username = principal.getUsername();
             if (username == null) {
                 return Result.error("无效的token");
             }
@@ -45,14 +39,9 @@ public class E2EEController {
      * Get user's public key for encryption
      */
     @GetMapping("/public-key/{userId}")
-    public Result getUserPublicKey(@PathVariable Integer userId, HttpServletRequest request) {
+    public Result getUserPublicKey(@PathVariable Integer userId, AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization");
-            if (token != null && token.startsWith("Bearer ")) {
-                token = token.substring(7);
-            }
-            
-            String username = JwtUtil.getUsernameFromToken(token);
+            String username = principal.getUsername();
             if (username == null) {
                 return Result.error("无效的token");
             }
@@ -67,14 +56,9 @@ public class E2EEController {
      * Send encrypted message
      */
     @PostMapping("/send-encrypted")
-    public Result sendEncryptedMessage(@RequestBody EncryptedMessageDto encryptedMessageDto, HttpServletRequest request) {
+    public Result sendEncryptedMessage(@RequestBody EncryptedMessageDto encryptedMessageDto, AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization");
-            if (token != null && token.startsWith("Bearer ")) {
-                token = token.substring(7);
-            }
-            
-            String username = JwtUtil.getUsernameFromToken(token);
+            String username = principal.getUsername();
             if (username == null) {
                 return Result.error("无效的token");
             }
@@ -89,14 +73,9 @@ public class E2EEController {
      * Check E2EE status between two users
      */
     @GetMapping("/status/{user1Id}/{user2Id}")
-    public Result checkE2EEStatus(@PathVariable Integer user1Id, @PathVariable Integer user2Id, HttpServletRequest request) {
+    public Result checkE2EEStatus(@PathVariable Integer user1Id, @PathVariable Integer user2Id, AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization");
-            if (token != null && token.startsWith("Bearer ")) {
-                token = token.substring(7);
-            }
-            
-            String username = JwtUtil.getUsernameFromToken(token);
+            String username = principal.getUsername();
             if (username == null) {
                 return Result.error("无效的token");
             }
@@ -1,36 +1,31 @@
 package com.example.springboot.controller;
 
+import com.example.springboot.Enum.FileType;
 import com.example.springboot.Enum.PermissionType;
-import com.example.springboot.entity.User;
-import com.example.springboot.entity.fileStorage;
+import com.example.springboot.dto.AuthPrincipal;
+import com.example.springboot.dto.FileBatchPermissionDto;
+import com.example.springboot.dto.FilePageDto;
+import com.example.springboot.dto.FilePermissionResultDto;
+import com.example.springboot.service.FileBatchPermissionService;
 import com.example.springboot.service.FileService;
-import com.example.springboot.service.UserService;
-import com.example.springboot.utils.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/file")
 public class FileController {
     private final FileService fileService;
-    private final UserService userService;
+    private final FileBatchPermissionService fileBatchPermissionService;
 
-    public FileController(FileService fileService, UserService userService) {
+    public FileController(FileService fileService, FileBatchPermissionService fileBatchPermissionService) {
         this.fileService = fileService;
-        this.userService = userService;
-    }
-
-    private Integer extractUserIdFromToken(String tokenHeader) {
-        String token = tokenHeader.replace("Bearer ", "");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
-        return user.getId();
+        this.fileBatchPermissionService = fileBatchPermissionService;
     }
 
     // 简单的 token 校验方法（根据实际情况来实现）
@@ -41,22 +36,24 @@ public class FileController {
 //    }
 
     @GetMapping("/list")
-    public ResponseEntity<Map<String, Object>> listUserFiles(@RequestHeader("Authorization") String authorizationHeader) {
+    public ResponseEntity<Map<String, Object>> listUserFiles(AuthPrincipal principal,
+                                                             @RequestParam(required = false) FileType type,
+                                                             @RequestParam(required = false) String sort,
+                                                             @RequestParam(required = false) String order,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer size) {
         try {
-            Integer userId = extractUserIdFromToken(authorizationHeader);
-
-            // 查询用户的文件
-            List<fileStorage> files = fileService.getUserFiles(userId);
-            List<fileStorage> distinctFiles = files.stream()
-                    .collect(Collectors.collectingAndThen(
-                            Collectors.toMap(file -> file.getId(), file -> file, (f1, f2) -> f1),
-                            map -> new ArrayList<>(map.values())
-                    ));
-            return ResponseEntity.ok(Map.of(
-                    "code", 200,
-                    "message", "Success",
-                    "files", distinctFiles
-            ));
+            Integer userId = principal.getUserId();
+
+            // 查询用户的文件（已去重），nextCursor 用于读取下一页
+            FilePageDto page = fileService.getUserFiles(userId, type, sort, order, cursor, size);
+            Map<String, Object> body = new HashMap<>();
+            body.put("code", 200);
+            body.put("message", "Success");
+            body.put("files", page.getFiles());
+            body.put("nextCursor", page.getNextCursor());
+            body.put("hasMore", page.getHasMore());
+            return ResponseEntity.ok(body);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.badRequest().body(Map.of(
@@ -69,12 +66,13 @@ public class FileController {
     // 下载文件 API
     @GetMapping("/download")
     public ResponseEntity<?> downloadFile(@RequestParam Long fileId,
-                                          @RequestHeader(value = "Authorization", required = false) String authorizationHeader) {
+                                          AuthPrincipal principal,
+                                          HttpServletRequest request) {
         try {
             // 在此可以添加文件权限验证，检查 token 或权限
-            Integer userId = extractUserIdFromToken(authorizationHeader);
-            // 调用 FileService 处理文件下载
-            return fileService.downloadFile(fileId, userId);
+            Integer userId = principal.getUserId();
+            // 调用 FileService 处理文件下载（支持 Range 断点续传）
+            return fileService.downloadFile(fileId, userId, request);
         } catch (IOException e) {
             return ResponseEntity.status(500).body("Failed to download file: " + e.getMessage());
         } catch (RuntimeException e) {
@@ -85,10 +83,10 @@ public class FileController {
     // 删除文件 API
     @DeleteMapping("/delete")
     public ResponseEntity<?> deleteFile(@RequestParam Long fileId,
-                                        @RequestHeader(value = "Authorization", required = false) String authorizationHeader) {
+                                        AuthPrincipal principal) {
         try {
             // 在此可以添加文件权限验证，检查 token 或权限
-            Integer userId = extractUserIdFromToken(authorizationHeader);
+            Integer userId = principal.getUserId();
             // 调用 FileService 删除文件
             String message = fileService.deleteFile(fileId, userId);
 
@@ -105,10 +103,10 @@ public class FileController {
     public ResponseEntity<?> shareFile(@RequestParam String targetUsername,
                                        @RequestParam Long fileId,
                                        @RequestParam PermissionType permission,
-                                       @RequestHeader(value = "Authorization") String authorizationHeader) {
+                                       AuthPrincipal principal) {
         try {
 
-            Integer userId = extractUserIdFromToken(authorizationHeader);
+            Integer userId = principal.getUserId();
             // 调用 FileService 共享文件
             String message = fileService.shareFile(userId, targetUsername, fileId, permission);
 
@@ -123,11 +121,12 @@ public class FileController {
     }
     @GetMapping("/demo")
     public ResponseEntity<?> demoFile(@RequestParam Long fileId,
-                                          @RequestHeader(value = "Authorization") String authorizationHeader) {
+                                          AuthPrincipal principal,
+                                          HttpServletRequest request) {
         try {
-            Integer userId = extractUserIdFromToken(authorizationHeader);
-            // 调用 Service 层处理文件下载
-            return fileService.demoFile(fileId, userId);
+            Integer userId = principal.getUserId();
+            // 调用 Service 层处理文件预览（流式输出，支持 Range）
+            return fileService.demoFile(fileId, userId, request);
 
         }catch (Exception e) {
 //            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
@@ -138,17 +137,29 @@ public class FileController {
         }
     }
 
+    // 图片缩略图 API，size 取 64/128/256 中不小于请求值的一档
+    @GetMapping("/thumbnail")
+    public ResponseEntity<?> thumbnail(@RequestParam Long fileId,
+                                       @RequestParam(defaultValue = "128") int size,
+                                       AuthPrincipal principal,
+                                       HttpServletRequest request) {
+        try {
+            return fileService.getThumbnail(fileId, principal.getUserId(), size, request);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Failed to generate thumbnail: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body("File not found: " + e.getMessage());
+        }
+    }
+
     // 撤销文件权限 API
     @PostMapping("/revoke")
     public ResponseEntity<?> revokeFilePermission(@RequestParam Long fileId,
                                                   @RequestParam Integer targetUserId,
-                                                  @RequestHeader(value = "Authorization") String authorizationHeader) {
+                                                  AuthPrincipal principal) {
         try {
-            // 进行权限验证，检查用户是否有权限撤销
-            // 可通过解析 token 进行验证，或通过其他方式确保权限（在这里简化了处理）
-
-            // 调用 FileService 撤销权限
-            String message = fileService.revokeFilePermission(fileId, targetUserId);
+            // 调用 FileService 撤销权限，由 Service 校验当前用户对文件的 SHARE 权限
+            String message = fileService.revokeFilePermission(principal.getUserId(), fileId, targetUserId);
 
             if (message.equals("File permission revoked successfully")) {
                 return ResponseEntity.ok().body(message);
@@ -159,5 +170,45 @@ public class FileController {
             return ResponseEntity.status(500).body("Failed to revoke file permission: " + e.getMessage());
         }
     }
-}
 
+    // 批量共享 API：每个文件共享给每个用户，results 中每个 (文件, 用户名) 一条结果
+    @PostMapping("/share/batch")
+    public ResponseEntity<?> shareFiles(@RequestBody FileBatchPermissionDto dto,
+                                        AuthPrincipal principal) {
+        try {
+            List<FilePermissionResultDto> results = fileBatchPermissionService.shareFiles(
+                    principal.getUserId(), dto.getFileIds(), dto.getUsernames(), dto.getPermission());
+            return ResponseEntity.ok(batchBody(results));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Failed to share files: " + e.getMessage());
+        }
+    }
+
+    // 批量撤销 API：撤销每个用户对每个文件的权限
+    @PostMapping("/revoke/batch")
+    public ResponseEntity<?> revokeFiles(@RequestBody FileBatchPermissionDto dto,
+                                         AuthPrincipal principal) {
+        try {
+            List<FilePermissionResultDto> results = fileBatchPermissionService.revokeFiles(
+                    principal.getUserId(), dto.getFileIds(), dto.getUsernames());
+            return ResponseEntity.ok(batchBody(results));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Failed to revoke file permissions: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> batchBody(List<FilePermissionResultDto> results) {
+        long succeeded = results.stream().filter(FilePermissionResultDto::getSuccess).count();
+        Map<String, Object> body = new HashMap<>();
+        body.put("code", 200);
+        body.put("message", "Success");
+        body.put("succeeded", succeeded);
+        body.put("failed", results.size() - succeeded);
+        body.put("results", results);
+        return body;
+    }
+}
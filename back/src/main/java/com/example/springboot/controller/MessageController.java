@@ -1,15 +1,15 @@
 package com.example.springboot.controller;
 
 import com.example.springboot.common.Result;
+import com.example.springboot.dto.AuthPrincipal;
 import com.example.springboot.dto.ConversationDto;
 import com.example.springboot.dto.MessageDto;
+import com.example.springboot.dto.MessagePageDto;
 import com.example.springboot.dto.SendMessageDto;
 import com.example.springboot.service.MessageService;
-import com.example.springboot.utils.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpServletRequest;
 import java.util.List;
 
 @RestController
@@ -22,10 +22,9 @@ public class MessageController {
 
     @PostMapping("/send")
     public Result sendMessage(@RequestBody SendMessageDto sendMessageDto, 
-                             HttpServletRequest request) {
+                             AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization").replace("Bearer ", "");
-            Integer senderId = JwtUtil.getUserIdFromToken(token);
+            Integer senderId = principal.getUserId();
             
             MessageDto message = messageService.sendMessage(senderId, sendMessageDto);
             return Result.success(message);
@@ -35,24 +34,25 @@ public class MessageController {
     }
 
     @GetMapping("/conversation/{friendId}")
-    public Result getConversation(@PathVariable Integer friendId, 
-                                 HttpServletRequest request) {
+    public Result getConversation(@PathVariable Integer friendId,
+                                 @RequestParam(value = "before", required = false) String before,
+                                 @RequestParam(value = "after", required = false) String after,
+                                 @RequestParam(value = "size", required = false) Integer size,
+                                 AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization").replace("Bearer ", "");
-            Integer userId = JwtUtil.getUserIdFromToken(token);
+            Integer userId = principal.getUserId();
             
-            List<MessageDto> messages = messageService.getConversation(userId, friendId);
-            return Result.success(messages);
+            MessagePageDto page = messageService.getConversation(userId, friendId, before, after, size);
+            return Result.success(page);
         } catch (Exception e) {
             return Result.error("获取聊天记录失败: " + e.getMessage());
         }
     }
 
     @GetMapping("/conversations")
-    public Result getConversations(HttpServletRequest request) {
+    public Result getConversations(AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization").replace("Bearer ", "");
-            Integer userId = JwtUtil.getUserIdFromToken(token);
+            Integer userId = principal.getUserId();
             
             List<ConversationDto> conversations = messageService.getConversations(userId);
             return Result.success(conversations);
@@ -63,10 +63,9 @@ public class MessageController {
 
     @PostMapping("/mark-read/{senderId}")
     public Result markMessagesAsRead(@PathVariable Integer senderId, 
-                                   HttpServletRequest request) {
+                                   AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization").replace("Bearer ", "");
-            Integer receiverId = JwtUtil.getUserIdFromToken(token);
+            Integer receiverId = principal.getUserId();
             
             messageService.markMessagesAsRead(receiverId, senderId);
             return Result.success("消息已标记为已读");
@@ -77,10 +76,9 @@ public class MessageController {
 
     @GetMapping("/unread-count/{senderId}")
     public Result getUnreadCount(@PathVariable Integer senderId, 
-                               HttpServletRequest request) {
+                               AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization").replace("Bearer ", "");
-            Integer receiverId = JwtUtil.getUserIdFromToken(token);
+            Integer receiverId = principal.getUserId();
             
             Long count = messageService.getUnreadCount(receiverId, senderId);
             return Result.success(count);
@@ -91,10 +89,9 @@ public class MessageController {
 
     @GetMapping("/stats")
     public Result getMessageStats(@RequestParam(value = "date", required = false) String date,
-                                 HttpServletRequest request) {
+                                 AuthPrincipal principal) {
         try {
-            String token = request.getHeader("Authorization").replace("Bearer ", "");
-            Integer userId = JwtUtil.getUserIdFromToken(token);
+            Integer userId = principal.getUserId();
             
             // If no date provided, use today
             if (date == null || date.isEmpty()) {
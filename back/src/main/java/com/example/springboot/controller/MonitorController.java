@@ -0,0 +1,51 @@
+package com.example.springboot.controller;
+
+import com.example.springboot.common.Result;
+import com.example.springboot.service.FileAclCache;
+import com.example.springboot.service.TokenVerificationCache;
+import com.example.springboot.websocket.OutboundMessageDispatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 运行时指标查询
+ */
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Autowired
+    private OutboundMessageDispatcher outboundDispatcher;
+
+    @Autowired
+    private TokenVerificationCache tokenVerificationCache;
+
+    @Autowired
+    private FileAclCache fileAclCache;
+
+    /**
+     * WebSocket 出站队列深度及投递统计
+     */
+    @GetMapping("/websocket")
+    public Result websocketStats() {
+        return Result.success(outboundDispatcher.getStats());
+    }
+
+    /**
+     * token 校验缓存命中率
+     */
+    @GetMapping("/auth")
+    public Result authStats() {
+        return Result.success(tokenVerificationCache.getStats());
+    }
+
+    /**
+     * 文件权限判定缓存命中率
+     */
+    @GetMapping("/acl")
+    public Result aclStats() {
+        return Result.success(fileAclCache.getStats());
+    }
+}
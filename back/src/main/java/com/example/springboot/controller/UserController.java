@@ -1,11 +1,12 @@
 package com.example.springboot.controller;
 
 import com.example.springboot.common.Result;
-import com.example.springboot.config.FileProperties;
+import com.example.springboot.dto.AuthPrincipal;
 import com.example.springboot.dto.PasswordChangeDto;
 import com.example.springboot.dto.UpdateInfoDto;
 import com.example.springboot.entity.Tokens;
 import com.example.springboot.entity.User;
+import com.example.springboot.service.AvatarService;
 import com.example.springboot.service.UserService;
 import com.example.springboot.utils.JwtUtil;
 import jakarta.annotation.Resource;
@@ -14,9 +15,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -30,7 +28,7 @@ public class UserController {
     private UserService userService;
     
     @Autowired
-    private FileProperties fileProperties;
+    private AvatarService avatarService;
 
     /**
      * 查询所有的User表里面的数据
@@ -86,16 +84,14 @@ public class UserController {
 
     /**
      * 修改密码
-     * @param tokenHeader
+     * @param principal
      * @param passwordChangeDto
      * @return
      */
     @PostMapping("/password")
-    public Result changePassword(@RequestHeader("Authorization") String tokenHeader,
+    public Result changePassword(AuthPrincipal principal,
                                  @RequestBody PasswordChangeDto passwordChangeDto){
-        String token = tokenHeader.replace("Bearer ","");
-        String username = JwtUtil.getUsernameFromToken(token);
-        passwordChangeDto.setUsername(username);
+        passwordChangeDto.setUsername(principal.getUsername());
         boolean passwordFlag = userService.changPassword(passwordChangeDto);
         if(passwordFlag){
             return Result.success();
@@ -106,14 +102,12 @@ public class UserController {
 
     /**
      * 上传用户个人信息
-     * @param tokenHeader
+     * @param principal
      * @return
      */
     @PostMapping("/profile")
-    public Result userInformation(@RequestHeader("Authorization") String tokenHeader){
-        String token = tokenHeader.replace("Bearer ","");
-        String username = JwtUtil.getUsernameFromToken(token);
-        User user = userService.getUserInformation(username);
+    public Result userInformation(AuthPrincipal principal){
+        User user = userService.getUserInformation(principal.getUsername());
         return Result.success(user);
     }
 
@@ -133,7 +127,7 @@ public class UserController {
             userInfo.put("id", user.getId());
             userInfo.put("username", user.getUsername());
             userInfo.put("displayName", user.getDisplayName());
-            userInfo.put("avatarUrl", user.getAvatarUrl());
+            userInfo.put("avatarUrl", AvatarService.sized(user.getAvatarUrl(), AvatarService.LIST_SIZE));
             userList.add(userInfo);
         }
         
@@ -144,11 +138,9 @@ public class UserController {
      * 修改用户信息
      */
     @PostMapping("/update")
-    public Result updateInformation(@RequestHeader("Authorization") String tokenHeader,
+    public Result updateInformation(AuthPrincipal principal,
                                    @RequestBody UpdateInfoDto updateInfoDto){
-       String token = tokenHeader.replace("Bearer ","");
-       String username = JwtUtil.getUsernameFromToken(token);
-       updateInfoDto.setUsername(username);
+       updateInfoDto.setUsername(principal.getUsername());
        userService.updateInformation(updateInfoDto);
        return Result.success();
    }
@@ -157,11 +149,10 @@ public class UserController {
      * 上传用户头像
      */
     @PostMapping("/upload-avatar")
-    public Result uploadAvatar(@RequestHeader("Authorization") String tokenHeader,
+    public Result uploadAvatar(AuthPrincipal principal,
                               @RequestParam("file") MultipartFile file) {
         try {
-            String token = tokenHeader.replace("Bearer ", "");
-            String username = JwtUtil.getUsernameFromToken(token);
+            String username = principal.getUsername();
             
             if (file.isEmpty()) {
                 return Result.error("400", "请选择要上传的文件");
@@ -178,25 +169,14 @@ public class UserController {
                 return Result.error("400", "文件大小不能超过5MB");
             }
             
-            // 创建上传目录
-            String avatarDir = fileProperties.getAvatarDir();
-            Path uploadPath = Paths.get(avatarDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
+            // 裁成正方形并生成固定尺寸，URL 带内容版本号
+            String avatarUrl;
+            try {
+                avatarUrl = avatarService.store(file.getInputStream());
+            } catch (IllegalArgumentException e) {
+                return Result.error("400", "无法识别的图片格式");
             }
             
-            // 生成唯一文件名
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            String filename = username + "_" + System.currentTimeMillis() + extension;
-            
-            // 保存文件
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath);
-            
-            // 构建直接访问URL (相对于Web根目录的路径)
-            String avatarUrl = "/uploads/avatar/" + filename;
-            
             // 更新用户头像URL
             UpdateInfoDto updateInfoDto = new UpdateInfoDto();
             updateInfoDto.setUsername(username);
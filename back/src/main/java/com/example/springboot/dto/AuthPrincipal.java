@@ -0,0 +1,35 @@
+package com.example.springboot.dto;
+
+/**
+ * 已认证的请求主体，由 JwtInterceptor 解析 token 后放入请求属性
+ */
+public class AuthPrincipal {
+    public static final String REQUEST_ATTRIBUTE = "principal";
+
+    private final Integer userId;
+    private final String username;
+    // token 过期时间（毫秒时间戳）
+    private final long expiresAt;
+
+    public AuthPrincipal(Integer userId, String username, long expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.springboot.dto;
+
+import com.example.springboot.Enum.PermissionType;
+
+import java.util.List;
+
+public class FileBatchPermissionDto {
+    private List<Long> fileIds;
+    private List<String> usernames;
+    // 仅批量共享使用
+    private PermissionType permission;
+
+    public List<Long> getFileIds() {
+        return fileIds;
+    }
+
+    public void setFileIds(List<Long> fileIds) {
+        this.fileIds = fileIds;
+    }
+
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+
+    public PermissionType getPermission() {
+        return permission;
+    }
+
+    public void setPermission(PermissionType permission) {
+        this.permission = permission;
+    }
+}
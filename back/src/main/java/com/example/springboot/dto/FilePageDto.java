@@ -0,0 +1,45 @@
+package com.example.springboot.dto;
+
+import com.example.springboot.entity.fileStorage;
+
+import java.util.List;
+
+public class FilePageDto {
+    // 本页文件，按请求的排序字段排列
+    private List<fileStorage> files;
+    // 传回 cursor 参数以继续读取下一页，没有更多时为 null
+    private String nextCursor;
+    private Boolean hasMore;
+
+    public FilePageDto() {}
+
+    public FilePageDto(List<fileStorage> files, String nextCursor, Boolean hasMore) {
+        this.files = files;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<fileStorage> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<fileStorage> files) {
+        this.files = files;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
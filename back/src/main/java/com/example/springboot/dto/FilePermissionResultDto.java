@@ -0,0 +1,50 @@
+package com.example.springboot.dto;
+
+public class FilePermissionResultDto {
+    private Long fileId;
+    private String username;
+    private Boolean success;
+    // 与单个共享/撤销接口返回的提示一致
+    private String message;
+
+    public FilePermissionResultDto() {}
+
+    public FilePermissionResultDto(Long fileId, String username, Boolean success, String message) {
+        this.fileId = fileId;
+        this.username = username;
+        this.success = success;
+        this.message = message;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public void setSuccess(Boolean success) {
+        this.success = success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
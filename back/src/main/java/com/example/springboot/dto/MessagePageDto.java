@@ -0,0 +1,43 @@
+package com.example.springboot.dto;
+
+import java.util.List;
+
+public class MessagePageDto {
+    // Messages of this page, always in ascending id (chronological) order
+    private List<MessageDto> messages;
+    // Opaque cursor to pass back as before/after to continue in the same direction
+    private String nextCursor;
+    private Boolean hasMore;
+
+    public MessagePageDto() {}
+
+    public MessagePageDto(List<MessageDto> messages, String nextCursor, Boolean hasMore) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<MessageDto> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageDto> messages) {
+        this.messages = messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
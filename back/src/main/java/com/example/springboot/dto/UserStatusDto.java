@@ -0,0 +1,29 @@
+package com.example.springboot.dto;
+
+public class UserStatusDto {
+    private Integer userId;
+    private Boolean isOnline;
+
+    public UserStatusDto() {}
+
+    public UserStatusDto(Integer userId, Boolean isOnline) {
+        this.userId = userId;
+        this.isOnline = isOnline;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public Boolean getIsOnline() {
+        return isOnline;
+    }
+
+    public void setIsOnline(Boolean isOnline) {
+        this.isOnline = isOnline;
+    }
+}
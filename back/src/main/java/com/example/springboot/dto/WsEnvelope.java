@@ -0,0 +1,44 @@
+package com.example.springboot.dto;
+
+/**
+ * WebSocket 推送消息的统一外层结构：{"type": ..., "data": ...}
+ */
+public class WsEnvelope<T> {
+    public static final String NEW_MESSAGE = "NEW_MESSAGE";
+    public static final String USER_ONLINE = "USER_ONLINE";
+    public static final String USER_OFFLINE = "USER_OFFLINE";
+
+    private String type;
+    private T data;
+
+    public WsEnvelope() {}
+
+    public WsEnvelope(String type, T data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    public static WsEnvelope<MessageDto> newMessage(MessageDto messageDto) {
+        return new WsEnvelope<>(NEW_MESSAGE, messageDto);
+    }
+
+    public static WsEnvelope<UserStatusDto> userStatus(Integer userId, boolean isOnline) {
+        return new WsEnvelope<>(isOnline ? USER_ONLINE : USER_OFFLINE, new UserStatusDto(userId, isOnline));
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    public void setData(T data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.springboot.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 对话摘要：每个 (owner, peer) 一行，在写消息时同步维护
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "conversation_summary",
+        uniqueConstraints = @UniqueConstraint(name = "unique_owner_peer", columnNames = {"owner_id", "peer_id"}),
+        indexes = @Index(name = "idx_owner_last_time", columnList = "owner_id, last_message_time"))
+public class ConversationSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Integer ownerId;
+
+    @Column(name = "peer_id", nullable = false)
+    private Integer peerId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_message_preview", length = 255)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_time")
+    private LocalDateTime lastMessageTime;
+
+    // owner 收到、尚未读取的来自 peer 的消息数
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+}
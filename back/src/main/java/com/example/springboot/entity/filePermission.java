@@ -8,7 +8,8 @@ import com.example.springboot.Enum.PermissionType;
 @Entity
 @Getter
 @Setter
-@Table(name = "file_permission")
+// 每个 (文件, 用户) 一行，permissions 为 PermissionType 的位掩码
+@Table(name = "file_acl")
 public class filePermission {
 
     @Id
@@ -30,9 +31,10 @@ public class filePermission {
             updatable = false,
             foreignKey = @ForeignKey(name = "fk_file_storage_user")
     )
-    private User user;    @Enumerated(EnumType.STRING)
-    @Column(name = "permission", length = 20, nullable = false)
-    private PermissionType permission;
+    private User user;
+
+    @Column(name = "permissions", nullable = false)
+    private int permissions;
 
     // Getters and Setters for fields that Lombok isn't generating
     public Long getId() { return id; }
@@ -47,6 +49,8 @@ public class filePermission {
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
-    public PermissionType getPermission() { return permission; }
-    public void setPermission(PermissionType permission) { this.permission = permission; }
+    public int getPermissions() { return permissions; }
+    public void setPermissions(int permissions) { this.permissions = permissions; }
+
+    public boolean has(PermissionType type) { return type.isIn(permissions); }
 }
@@ -42,7 +42,13 @@ public class fileStorage {
     private FileType fileType;
 
     @Column(name = "file_size")
-    private long fileSize;    @Column(name = "uploaded_at", nullable = false, updatable = false)
+    private long fileSize;
+
+    // 内容的 SHA-256，对应 blob 存储中的文件；旧数据为空，仍按文件名存放在上传目录
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "uploaded_at", nullable = false, updatable = false)
     private LocalDateTime uploadedAt = LocalDateTime.now();
 
     // Getters and Setters for fields that Lombok isn't generating
@@ -64,6 +70,9 @@ public class fileStorage {
     public long getFileSize() { return fileSize; }
     public void setFileSize(long fileSize) { this.fileSize = fileSize; }
 
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
     public LocalDateTime getUploadedAt() { return uploadedAt; }
     public void setUploadedAt(LocalDateTime uploadedAt) { this.uploadedAt = uploadedAt; }
 }
@@ -1,13 +1,20 @@
 package com.example.springboot.interceptor;
 
-import com.example.springboot.utils.JwtUtil;
+import com.example.springboot.dto.AuthPrincipal;
+import com.example.springboot.service.TokenVerificationCache;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 @Component
-public class JwtInterceptor implements HandlerInterceptor {    @Override
+public class JwtInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private TokenVerificationCache tokenVerificationCache;
+
+    @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         String authHeader = request.getHeader("Authorization");
 
@@ -18,17 +25,14 @@ public class JwtInterceptor implements HandlerInterceptor {    @Override
 
         String token = authHeader.substring(7);
 
-        try {
-            if (!JwtUtil.validateToken(token)) {
-                response.setStatus(401);
-                return false;
-            }
-            String username = JwtUtil.getUsernameFromToken(token);
-            request.setAttribute("username", username);
-            return true;
-        } catch (Exception e) {
+        AuthPrincipal principal = tokenVerificationCache.verify(token);
+        // 身份只取自 token 中的 userId 声明，缺少该声明的旧 token 需要重新登录
+        if (principal == null || principal.getUserId() == null) {
             response.setStatus(401);
             return false;
         }
+        request.setAttribute(AuthPrincipal.REQUEST_ATTRIBUTE, principal);
+        request.setAttribute("username", principal.getUsername());
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package com.example.springboot.journal;
+
+/**
+ * 日志中的位置：段号 + 段内偏移（记录结束处）
+ */
+public final class JournalPosition {
+    private final long segment;
+    private final int offset;
+
+    public JournalPosition(long segment, int offset) {
+        this.segment = segment;
+        this.offset = offset;
+    }
+
+    public long getSegment() {
+        return segment;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+}
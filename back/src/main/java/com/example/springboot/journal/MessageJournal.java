@@ -0,0 +1,253 @@
+package com.example.springboot.journal;
+
+import com.example.springboot.Enum.FsyncPolicy;
+import com.example.springboot.entity.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 消息的本地追加日志
+ * 日志按固定大小分段，每段通过内存映射写入；记录格式为 [长度][CRC32][内容]，长度为 0 表示段内数据结束。
+ * 数据库写入进度记录在 checkpoint 文件中，检查点之前的段会被删除，启动时重放检查点之后的记录
+ */
+public class MessageJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+
+    private long segment = -1;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int syncedOffset;
+    // 已写入但尚未刷盘、等待确认的消息（INTERVAL 策略）
+    private List<PendingAck> unsynced = new ArrayList<>();
+    private ScheduledExecutorService syncer;
+
+    private volatile long checkpointSegment = -1;
+
+    public MessageJournal(Path dir, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = Math.max(1, fsyncIntervalMs);
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * 读取检查点之后、尚未写入数据库的记录；需在 start 之前调用，并由调用方先把结果写入数据库
+     */
+    public List<Message> recover() throws IOException {
+        long[] checkpoint = readCheckpoint();
+        List<Message> recovered = new ArrayList<>();
+        for (long number : listSegments()) {
+            segment = Math.max(segment, number);
+            if (number < checkpoint[0]) {
+                continue;
+            }
+            int start = number == checkpoint[0] ? (int) checkpoint[1] : 0;
+            try (FileChannel readChannel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                MappedByteBuffer data = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                data.position(start);
+                while (data.remaining() >= HEADER_SIZE) {
+                    int length = data.getInt();
+                    int checksum = data.getInt();
+                    if (length <= 0 || length > data.remaining()) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    data.get(payload);
+                    if (checksum != crcOf(payload)) {
+                        // 崩溃时未写完的记录，之后不会再有有效数据
+                        break;
+                    }
+                    recovered.add(MessageRecordCodec.decode(new ByteArrayInputStream(payload)));
+                }
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * 清理已恢复的旧段并开始写入新段
+     */
+    public void start() throws IOException {
+        for (long number : listSegments()) {
+            Files.deleteIfExists(segmentPath(number));
+        }
+        openSegment(segment + 1);
+        writeCheckpoint(new JournalPosition(segment, 0));
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "message-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncPending, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 追加一条消息；按刷盘策略在记录持久化后完成 ack
+     * @return 记录结束处的位置，写库后用于推进检查点
+     */
+    public synchronized JournalPosition append(Message message, CompletableFuture<Message> ack) throws IOException {
+        byte[] payload = MessageRecordCodec.encode(message);
+        int needed = HEADER_SIZE + payload.length;
+        if (needed > segmentSize) {
+            throw new IOException("Journal record too large: " + needed + " bytes");
+        }
+        if (buffer.remaining() < needed) {
+            roll();
+        }
+        buffer.putInt(payload.length);
+        buffer.putInt(crcOf(payload));
+        buffer.put(payload);
+        JournalPosition position = new JournalPosition(segment, buffer.position());
+
+        switch (fsyncPolicy) {
+            case ALWAYS -> {
+                force();
+                ack.complete(message);
+            }
+            case INTERVAL -> unsynced.add(new PendingAck(message, ack));
+            default -> ack.complete(message);
+        }
+        return position;
+    }
+
+    /**
+     * 记录已写入数据库的位置，并删除检查点之前的段
+     */
+    public void checkpoint(JournalPosition position) throws IOException {
+        writeCheckpoint(position);
+        if (position.getSegment() > checkpointSegment) {
+            for (long number : listSegments()) {
+                if (number < position.getSegment()) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+            checkpointSegment = position.getSegment();
+        }
+    }
+
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        syncPending();
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private void syncPending() {
+        List<PendingAck> acks;
+        synchronized (this) {
+            if (unsynced.isEmpty()) {
+                return;
+            }
+            force();
+            acks = unsynced;
+            unsynced = new ArrayList<>();
+        }
+        for (PendingAck pending : acks) {
+            pending.ack.complete(pending.message);
+        }
+    }
+
+    private void roll() throws IOException {
+        buffer.force();
+        for (PendingAck pending : unsynced) {
+            pending.ack.complete(pending.message);
+        }
+        unsynced = new ArrayList<>();
+        channel.close();
+        openSegment(segment + 1);
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment = number;
+        channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        syncedOffset = 0;
+    }
+
+    private void force() {
+        int end = buffer.position();
+        if (end > syncedOffset) {
+            buffer.force(syncedOffset, end - syncedOffset);
+            syncedOffset = end;
+        }
+    }
+
+    private void writeCheckpoint(JournalPosition position) throws IOException {
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temp, position.getSegment() + " " + position.getOffset(), StandardCharsets.UTF_8);
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return new long[]{-1, 0};
+        }
+        String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+        return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static int crcOf(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static final class PendingAck {
+        private final Message message;
+        private final CompletableFuture<Message> ack;
+
+        private PendingAck(Message message, CompletableFuture<Message> ack) {
+            this.message = message;
+            this.ack = ack;
+        }
+    }
+}
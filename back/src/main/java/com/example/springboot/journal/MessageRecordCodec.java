@@ -0,0 +1,81 @@
+package com.example.springboot.journal;
+
+import com.example.springboot.Enum.MessageType;
+import com.example.springboot.entity.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Message 与日志记录之间的二进制编解码
+ */
+final class MessageRecordCodec {
+
+    private static final int VERSION = 1;
+
+    private MessageRecordCodec() {}
+
+    static byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeLong(message.getId());
+        out.writeInt(message.getSenderId());
+        out.writeInt(message.getReceiverId());
+        writeString(out, message.getContent());
+        writeString(out, message.getMessageType().name());
+        out.writeBoolean(Boolean.TRUE.equals(message.getIsRead()));
+        writeString(out, message.getEncryptedAESKey());
+        writeString(out, message.getIv());
+        writeString(out, message.getCreatedAt().toString());
+        writeString(out, message.getUpdatedAt().toString());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Message decode(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal record version: " + version);
+        }
+        Message message = new Message();
+        message.setId(in.readLong());
+        message.setSenderId(in.readInt());
+        message.setReceiverId(in.readInt());
+        message.setContent(readString(in));
+        message.setMessageType(MessageType.valueOf(readString(in)));
+        message.setIsRead(in.readBoolean());
+        message.setEncryptedAESKey(readString(in));
+        message.setIv(readString(in));
+        message.setCreatedAt(LocalDateTime.parse(readString(in)));
+        message.setUpdatedAt(LocalDateTime.parse(readString(in)));
+        return message;
+    }
+
+    // 长度 -1 表示 null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.springboot.repository;
+
+import com.example.springboot.entity.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+
+    // Insert or advance the (owner, peer) summary; out-of-order writes never move the last message backwards
+    @Modifying
+    @Query(value = "INSERT INTO conversation_summary " +
+            "(owner_id, peer_id, last_message_id, last_message_preview, last_message_time, unread_count) " +
+            "VALUES (:ownerId, :peerId, :messageId, :preview, :messageTime, :unreadDelta) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_message_preview = IF(:messageId > last_message_id, :preview, last_message_preview), " +
+            "last_message_time = IF(:messageId > last_message_id, :messageTime, last_message_time), " +
+            "last_message_id = GREATEST(last_message_id, :messageId), " +
+            "unread_count = unread_count + :unreadDelta",
+            nativeQuery = true)
+    void upsert(@Param("ownerId") Integer ownerId,
+                @Param("peerId") Integer peerId,
+                @Param("messageId") Long messageId,
+                @Param("preview") String preview,
+                @Param("messageTime") LocalDateTime messageTime,
+                @Param("unreadDelta") int unreadDelta);
+
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.unreadCount = 0 WHERE s.ownerId = :ownerId AND s.peerId = :peerId")
+    void resetUnread(@Param("ownerId") Integer ownerId, @Param("peerId") Integer peerId);
+
+    // Conversation list of a user joined with the peer, newest activity first: rows of [summary, user]
+    @Query("SELECT s, u FROM ConversationSummary s JOIN User u ON u.id = s.peerId " +
+           "WHERE s.ownerId = :ownerId ORDER BY s.lastMessageTime DESC")
+    List<Object[]> findByOwnerWithPeer(@Param("ownerId") Integer ownerId);
+}
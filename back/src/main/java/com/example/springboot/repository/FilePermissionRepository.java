@@ -1,23 +1,33 @@
 package com.example.springboot.repository;
 
-import com.example.springboot.Enum.PermissionType;
 import com.example.springboot.entity.filePermission;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface FilePermissionRepository extends JpaRepository<filePermission, Long> {
     List<filePermission> findByUserId(Integer userId);
 
+    // 对该文件有任意权限的用户
+    @Query("SELECT p.userId FROM filePermission p WHERE p.file.id = :fileId")
+    List<Integer> findUserIdsByFileId(@Param("fileId") Long fileId);
+
     void deleteByFileId(Long fileId);
 
     Optional<filePermission> findByFileIdAndUserId(Long fileId, Integer targetUserId);
 
     void deleteByFileIdAndUserId(Long fileId, Integer targetUserId);
-    boolean existsByFileIdAndUserIdAndPermissionIn(
-            Long file_id, Integer userId, Collection<PermissionType> permission
-    );
+    @Query("SELECT p.permissions FROM filePermission p WHERE p.file.id = :fileId AND p.userId = :userId")
+    Optional<Integer> findPermissions(@Param("fileId") Long fileId, @Param("userId") Integer userId);
+
+    // 在已有权限上追加位，没有记录时新建
+    @Modifying
+    @Query(value = "INSERT INTO file_acl (file_id, user_id, permissions) VALUES (:fileId, :userId, :mask) "
+            + "ON DUPLICATE KEY UPDATE permissions = permissions | VALUES(permissions)", nativeQuery = true)
+    int grant(@Param("fileId") Long fileId, @Param("userId") Integer userId, @Param("mask") int mask);
 
 }
@@ -1,6 +1,7 @@
 package com.example.springboot.repository;
 
 import com.example.springboot.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -11,25 +12,31 @@ import java.util.List;
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
-    // Get conversation between two users
-    @Query("SELECT m FROM Message m WHERE " +
-           "(m.senderId = :userId1 AND m.receiverId = :userId2) OR " +
-           "(m.senderId = :userId2 AND m.receiverId = :userId1) " +
-           "ORDER BY m.createdAt ASC")
-    List<Message> findConversation(@Param("userId1") Integer userId1, @Param("userId2") Integer userId2);
-    
-    // Get all conversations for a user with last message
-    @Query("SELECT m FROM Message m WHERE m.id IN (" +
-           "SELECT MAX(m2.id) FROM Message m2 WHERE " +
-           "m2.senderId = :userId OR m2.receiverId = :userId " +
-           "GROUP BY CASE WHEN m2.senderId = :userId THEN m2.receiverId ELSE m2.senderId END" +
-           ") ORDER BY m.createdAt DESC")
-    List<Message> findLastMessagesForUser(@Param("userId") Integer userId);
+    // Keyset page of one direction of a conversation, older than the cursor (newest first)
+    @Query("SELECT m FROM Message m WHERE m.senderId = :senderId AND m.receiverId = :receiverId " +
+           "AND m.id < :beforeId ORDER BY m.id DESC")
+    List<Message> findDirectionBefore(@Param("senderId") Integer senderId,
+                                      @Param("receiverId") Integer receiverId,
+                                      @Param("beforeId") Long beforeId,
+                                      Pageable pageable);
+
+    // Keyset page of one direction of a conversation, newer than the cursor (oldest first)
+    @Query("SELECT m FROM Message m WHERE m.senderId = :senderId AND m.receiverId = :receiverId " +
+           "AND m.id > :afterId ORDER BY m.id ASC")
+    List<Message> findDirectionAfter(@Param("senderId") Integer senderId,
+                                     @Param("receiverId") Integer receiverId,
+                                     @Param("afterId") Long afterId,
+                                     Pageable pageable);
     
     // Count unread messages for a user from a specific sender
     @Query("SELECT COUNT(m) FROM Message m WHERE m.receiverId = :receiverId AND m.senderId = :senderId AND m.isRead = false")
     Long countUnreadMessages(@Param("receiverId") Integer receiverId, @Param("senderId") Integer senderId);
     
+    // Unread message counts for a user, grouped by sender: rows of [senderId, count]
+    @Query("SELECT m.senderId, COUNT(m) FROM Message m WHERE m.receiverId = :receiverId AND m.isRead = false " +
+           "GROUP BY m.senderId")
+    List<Object[]> countUnreadMessagesGroupedBySender(@Param("receiverId") Integer receiverId);
+    
     // Mark messages as read
     @Modifying
     @Query("UPDATE Message m SET m.isRead = true WHERE m.receiverId = :receiverId AND m.senderId = :senderId AND m.isRead = false")
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 //@Repository
@@ -13,6 +14,8 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 
     User findByUsername(String username);
 
+    List<User> findByUsernameIn(Collection<String> usernames);
+
     List<User> findByUsernameContaining(String keyword);
 
     @Modifying
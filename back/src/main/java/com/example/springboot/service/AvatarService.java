@@ -0,0 +1,184 @@
+package com.example.springboot.service;
+
+import com.example.springboot.config.FileProperties;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 头像处理与读取
+ * 上传时把图片居中裁成正方形并生成几档固定尺寸的 JPEG，文件名带内容摘要作为版本号，
+ * 同一 URL 的内容永不改变，可以长期缓存；热点头像的字节保存在内存中
+ */
+@Service
+public class AvatarService {
+
+    // 生成的头像边长：聊天气泡和列表用 96（2 倍屏下 48px），个人资料用 256
+    public static final int[] SIZES = {48, 96, 256};
+    public static final int LIST_SIZE = 96;
+    public static final int PROFILE_SIZE = 256;
+
+    public static final String URL_PREFIX = "/uploads/avatars/";
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-f]{16})-(\\d+)\\.jpg");
+
+    private final FileProperties fileProperties;
+
+    private Path root;
+    // 内存缓存：文件名 -> 图片字节，按访问顺序排列，总大小超过上限时淘汰最久未用的
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public AvatarService(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(fileProperties.getAvatarDir(), "sized");
+        Files.createDirectories(root);
+    }
+
+    /**
+     * 处理上传的头像并返回个人资料尺寸的 URL
+     * @throws IllegalArgumentException 图片无法解码时
+     */
+    public String store(InputStream in) throws IOException {
+        BufferedImage source = ThumbnailService.readSubsampled(in, PROFILE_SIZE);
+        if (source == null) {
+            throw new IllegalArgumentException("Unsupported image");
+        }
+        int side = Math.min(source.getWidth(), source.getHeight());
+        BufferedImage square = source.getSubimage(
+                (source.getWidth() - side) / 2, (source.getHeight() - side) / 2, side, side);
+
+        byte[][] encoded = new byte[SIZES.length][];
+        for (int i = 0; i < SIZES.length; i++) {
+            encoded[i] = encode(square, SIZES[i]);
+        }
+        // 以最大一档的内容摘要作为版本号，内容相同的上传得到相同的 URL
+        String version = HexFormat.of().formatHex(sha256(encoded[SIZES.length - 1])).substring(0, 16);
+        for (int i = 0; i < SIZES.length; i++) {
+            Path target = root.resolve(fileName(version, SIZES[i]));
+            if (Files.exists(target)) {
+                continue;
+            }
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.write(tmp, encoded[i]);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return URL_PREFIX + fileName(version, PROFILE_SIZE);
+    }
+
+    /**
+     * 文件名合法且头像存在
+     */
+    public boolean exists(String fileName) {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            return false;
+        }
+        synchronized (cache) {
+            if (cache.containsKey(fileName)) {
+                return true;
+            }
+        }
+        return Files.exists(root.resolve(fileName));
+    }
+
+    /**
+     * 读取头像字节，文件名不合法或不存在时返回 null
+     */
+    public byte[] load(String fileName) throws IOException {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        synchronized (cache) {
+            byte[] cached = cache.get(fileName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Path file = root.resolve(fileName);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        synchronized (cache) {
+            byte[] previous = cache.put(fileName, bytes);
+            cachedBytes += bytes.length - (previous != null ? previous.length : 0);
+            evict();
+        }
+        return bytes;
+    }
+
+    /**
+     * 把头像 URL 换成指定尺寸；旧版本上传的原图或外部链接原样返回
+     */
+    public static String sized(String avatarUrl, int size) {
+        if (avatarUrl == null || !avatarUrl.startsWith(URL_PREFIX)) {
+            return avatarUrl;
+        }
+        Matcher m = FILE_NAME.matcher(avatarUrl.substring(URL_PREFIX.length()));
+        return m.matches() ? URL_PREFIX + fileName(m.group(1), size) : avatarUrl;
+    }
+
+    private static String fileName(String version, int size) {
+        return version + "-" + size + ".jpg";
+    }
+
+    private static byte[] encode(BufferedImage square, int size) throws IOException {
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            // JPEG 没有透明通道，透明部分填白色
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(square, 0, 0, size, size, null);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(scaled, "jpg", out)) {
+            throw new IOException("No image writer for jpg");
+        }
+        return out.toByteArray();
+    }
+
+    private void evict() {
+        long maxBytes = fileProperties.getAvatarCacheMaxBytes();
+        Iterator<Map.Entry<String, byte[]>> it = cache.entrySet().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            cachedBytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
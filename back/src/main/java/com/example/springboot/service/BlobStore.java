@@ -0,0 +1,209 @@
+package com.example.springboot.service;
+
+import com.example.springboot.config.FileProperties;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 按内容 SHA-256 去重的文件存储
+ * 内容先写入暂存区并在同一次流式写入中计算摘要，再移动到 ab/cd/{hash} 的扇出目录；
+ * file_blob 表记录每个 blob 被多少条 file_storage 记录引用，最后一个引用删除时才删除文件。
+ * store / release 必须在写入或删除 file_storage 记录的同一事务中调用，file_blob 行锁保证二者互斥；
+ * 文件的删除推迟到事务结束后（release 提交后、store 回滚后），并在独立事务中确认已无引用才执行
+ */
+@Service
+public class BlobStore {
+
+    private final FileProperties fileProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+
+    private Path root;
+    private Path staging;
+
+    public BlobStore(FileProperties fileProperties, JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager) {
+        this.fileProperties = fileProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        // 事务完成回调中访问数据库必须开启新事务
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(fileProperties.getBlobDir());
+        staging = root.resolve("tmp");
+        Files.createDirectories(staging);
+    }
+
+    /**
+     * 暂存的上传内容及其摘要
+     */
+    public static final class StagedBlob {
+        private final Path tempFile;
+        private final String hash;
+        private final long size;
+
+        public StagedBlob(Path tempFile, String hash, long size) {
+            this.tempFile = tempFile;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public Path getTempFile() {
+            return tempFile;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * 将输入流写入暂存区，写入的同时计算 SHA-256
+     */
+    public StagedBlob stage(InputStream in) throws IOException {
+        Path tmp = createStagingFile();
+        MessageDigest digest = sha256();
+        long size;
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+            size = in.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return new StagedBlob(tmp, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * 在暂存区创建空文件，供调用方自行写入后再构造 StagedBlob
+     */
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(staging, "upload-", ".tmp");
+    }
+
+    /**
+     * 增加引用并把暂存文件放到内容地址；相同内容已存在时在事务提交后删除暂存文件，回滚时暂存文件仍归调用方。
+     * 由本次调用放入的文件在事务回滚后删除
+     */
+    public Path store(StagedBlob staged) throws IOException {
+        // 先取得 file_blob 行锁，避免与并发的最后一次 release 交错
+        jdbcTemplate.update("INSERT INTO file_blob (hash, size, ref_count) VALUES (?, ?, 1) "
+                + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", staged.getHash(), staged.getSize());
+        Path target = resolve(staged.getHash());
+        if (Files.exists(target)) {
+            onCommit(() -> discard(staged));
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(staged.getTempFile(), target, StandardCopyOption.ATOMIC_MOVE);
+            onRollback(() -> deleteIfUnreferenced(staged.getHash()));
+        }
+        return target;
+    }
+
+    /**
+     * 减少引用，最后一个引用释放时在事务提交后删除 blob 文件
+     */
+    public void release(String hash) {
+        List<Integer> refs = jdbcTemplate.queryForList(
+                "SELECT ref_count FROM file_blob WHERE hash = ? FOR UPDATE", Integer.class, hash);
+        if (refs.isEmpty()) {
+            return;
+        }
+        if (refs.get(0) > 1) {
+            jdbcTemplate.update("UPDATE file_blob SET ref_count = ref_count - 1 WHERE hash = ?", hash);
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM file_blob WHERE hash = ?", hash);
+        onCommit(() -> deleteIfUnreferenced(hash));
+    }
+
+    /**
+     * file_blob 中没有该摘要时删除文件；FOR UPDATE 锁住该键（不存在时锁住间隙），
+     * 与同时写入相同内容的 store 互斥，不会删掉刚被重新引用的文件
+     */
+    private void deleteIfUnreferenced(String hash) {
+        newTransaction.executeWithoutResult(status -> {
+            List<Integer> refs = jdbcTemplate.queryForList(
+                    "SELECT ref_count FROM file_blob WHERE hash = ? FOR UPDATE", Integer.class, hash);
+            if (!refs.isEmpty()) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(resolve(hash));
+            } catch (IOException e) {
+                System.err.println("Failed to delete blob " + hash + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static void onCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    public void discard(StagedBlob staged) {
+        try {
+            Files.deleteIfExists(staged.getTempFile());
+        } catch (IOException e) {
+            System.err.println("Failed to delete staged upload " + staged.getTempFile() + ": " + e.getMessage());
+        }
+    }
+
+    public Path resolve(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.ChecksumType;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * 单个分片的校验和，在分片写入磁盘的同一次读取中计算
+ * 客户端以十六进制传入期望值，CRC32C 为 8 位十六进制
+ */
+final class ChunkChecksum {
+
+    private final CRC32C crc;
+    private final MessageDigest digest;
+
+    private ChunkChecksum(CRC32C crc, MessageDigest digest) {
+        this.crc = crc;
+        this.digest = digest;
+    }
+
+    static ChunkChecksum of(ChecksumType type) {
+        if (type == ChecksumType.SHA256) {
+            try {
+                return new ChunkChecksum(null, MessageDigest.getInstance("SHA-256"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return new ChunkChecksum(new CRC32C(), null);
+    }
+
+    InputStream wrap(InputStream in) {
+        return crc != null ? new CheckedInputStream(in, crc) : new DigestInputStream(in, digest);
+    }
+
+    String hex() {
+        return crc != null ? String.format("%08x", crc.getValue()) : HexFormat.of().formatHex(digest.digest());
+    }
+
+    boolean matches(String expected) {
+        return hex().equalsIgnoreCase(expected.trim());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.FileType;
+import com.example.springboot.config.UploadProperties;
+import com.example.springboot.entity.fileStorage;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片合并任务调度：合并在后台线程执行，请求立即返回任务 ID，客户端轮询任务状态
+ */
+@Service
+public class ChunkMergeService {
+
+    private final ChunkUploadService chunkService;
+    private final FileService fileService;
+    private final UploadProperties uploadProperties;
+
+    private final Map<String, MergeJob> jobs = new ConcurrentHashMap<>();
+    // 每个上传（用户 + fileId）同一时间只有一个合并任务
+    private final Map<String, MergeJob> activeByUpload = new ConcurrentHashMap<>();
+    private final ExecutorService jobExecutor;
+
+    public ChunkMergeService(ChunkUploadService chunkService, FileService fileService, UploadProperties uploadProperties) {
+        this.chunkService = chunkService;
+        this.fileService = fileService;
+        this.uploadProperties = uploadProperties;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.jobExecutor = Executors.newFixedThreadPool(Math.max(1, uploadProperties.getMergeJobThreads()), r -> {
+            Thread t = new Thread(r, "chunk-merge-job-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 提交合并任务；同一上传已有任务在进行时返回该任务
+     */
+    public MergeJob submit(Integer userId, String fileId, String filename, FileType fileType) {
+        String key = userId + ":" + fileId;
+        MergeJob job = new MergeJob(UUID.randomUUID().toString(), userId, fileId, filename);
+        MergeJob existing = activeByUpload.putIfAbsent(key, job);
+        if (existing != null) {
+            return existing;
+        }
+        jobs.put(job.getJobId(), job);
+        jobExecutor.execute(() -> run(job, key, fileType));
+        return job;
+    }
+
+    public MergeJob getJob(String jobId, Integer userId) {
+        MergeJob job = jobs.get(jobId);
+        if (job == null || !job.getOwnerId().equals(userId)) {
+            return null;
+        }
+        return job;
+    }
+
+    private void run(MergeJob job, String key, FileType fileType) {
+        job.start();
+        try {
+            BlobStore.StagedBlob staged = chunkService.mergeChunksToBlob(job.getFileId(), job.getOwnerId());
+            fileStorage stored;
+            try {
+                stored = fileService.registerUpload(job.getOwnerId(), staged, job.getFilename(), fileType);
+            } catch (Exception e) {
+                // 会话保留，已上传的分片不丢失，客户端可以重新合并
+                chunkService.abortMerge(job.getFileId(), staged);
+                throw e;
+            }
+            chunkService.completeMerge(job.getFileId());
+            job.complete(stored);
+        } catch (NoSuchFileException e) {
+            job.fail("Chunks not found");
+        } catch (AccessDeniedException e) {
+            job.fail("Not the owner of this upload");
+        } catch (Exception e) {
+            System.err.println("Chunk merge failed for " + job.getFileId() + ": " + e.getMessage());
+            job.fail("Merge failed: " + e.getMessage());
+        } finally {
+            activeByUpload.remove(key, job);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - uploadProperties.getMergeJobRetentionMs();
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+}
@@ -1,81 +1,381 @@
 // Service: ChunkUploadService.java
 package com.example.springboot.service;
 
+import com.example.springboot.Enum.ChecksumType;
+import com.example.springboot.config.UploadProperties;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileSystemUtils;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
-import java.util.Comparator;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class ChunkUploadService {
-    private Path tempRoot;
-    public ChunkUploadService(@Value("${file.upload-dir}") String uploadDir) throws IOException {
+    private final Path tempRoot;
+    private final UploadSessionRegistry sessions;
+    private final BlobStore blobStore;
+    // 所有合并共享的分片拷贝线程池，限制磁盘并发写入数
+    private final ExecutorService copyExecutor;
+    public ChunkUploadService(@Value("${file.upload-dir}") String uploadDir, UploadSessionRegistry sessions,
+                              BlobStore blobStore, UploadProperties uploadProperties) {
         this.tempRoot = Paths.get(uploadDir);
-        Files.createDirectories(this.tempRoot);
+        this.sessions = sessions;
+        this.blobStore = blobStore;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.copyExecutor = Executors.newFixedThreadPool(Math.max(1, uploadProperties.getMergeParallelism()), r -> {
+            Thread t = new Thread(r, "chunk-merge-copy-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
     }
     /**
-     * 获取已上传分片列表
+     * 开始直写模式的上传：按声明的总大小预分配（稀疏）目标文件，之后每个分片直接写到其偏移位置，
+     * 不再产生 .part 文件。相同参数重复调用时返回已有会话，用于断点续传
      */
-    public List<Integer> listUploadedChunks(String fileId) throws IOException {
-        Path dir = tempRoot.resolve(fileId);
-        if (!Files.exists(dir)) {
+    public List<Integer> initDirectUpload(String fileId, Integer ownerId, long totalSize, int chunkSize) throws IOException {
+        if (totalSize < 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid total size or chunk size");
+        }
+        if ((totalSize + chunkSize - 1) / chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks");
+        }
+        synchronized (sessions) {
+            UploadSession existing = sessions.get(fileId);
+            if (existing != null) {
+                if (existing.isDirect() && existing.getTotalSize() == totalSize
+                        && existing.getChunkSize() == chunkSize && ownerId.equals(existing.getOwnerId())) {
+                    return existing.receivedChunks();
+                }
+                throw new IllegalArgumentException(existing.isDirect()
+                        ? "Upload already initialized with different parameters"
+                        : "Upload already started in chunk file mode");
+            }
+            // 目标文件放在 blob 暂存区，合并时只需改名到内容地址
+            Path dataFile = blobStore.createStagingFile();
+            try (RandomAccessFile file = new RandomAccessFile(dataFile.toFile(), "rw")) {
+                file.setLength(totalSize);
+            }
+            sessions.createDirect(fileId, ownerId, totalSize, chunkSize, dataFile);
+            return List.of();
+        }
+    }
+
+    /**
+     * 再接收 incomingBytes 字节后是否仍在用户的上传配额内，只读内存中的按用户计数
+     */
+    public boolean withinQuota(Integer userId, long incomingBytes) {
+        return sessions.withinQuota(userId, incomingBytes);
+    }
+
+    /**
+     * 获取已上传分片列表，直接读取内存中的会话位图
+     */
+    public List<Integer> listUploadedChunks(String fileId, Integer userId) throws IOException {
+        UploadSession session = sessions.get(fileId);
+        if (session == null) {
             return List.of();
         }
-        return Files.list(dir)
-                .filter(p -> p.getFileName().toString().endsWith(".part"))
-                .map(p -> Integer.parseInt(
-                        p.getFileName().toString().replace(".part", "")))
-                .sorted()
-                .collect(Collectors.toList());
+        checkOwner(session, userId);
+        return session.receivedChunks();
+    }
+
+    /**
+     * 上传会话概要：模式、预期分片数、已接收分片数与字节数、最后活动时间
+     */
+    public Map<String, Object> sessionSummary(String fileId, Integer userId) throws IOException {
+        UploadSession session = sessions.get(fileId);
+        if (session == null) {
+            return null;
+        }
+        checkOwner(session, userId);
+        return session.summary();
     }
 
     /**
      * 保存单个分片
+     * @param totalChunks 预期分片总数，旧版本客户端不传时为 null
+     * @param checksum 分片校验和（十六进制），不传时不校验；校验失败的分片不会标记为已接收，客户端只需重传该分片
+     */
+    public void saveChunk(String fileId, Integer userId, int chunkIndex, Integer totalChunks,
+                          String checksum, ChecksumType checksumType, InputStream in) throws IOException {
+        if (totalChunks != null && totalChunks <= 0) {
+            throw new IllegalArgumentException("Invalid total chunks");
+        }
+        UploadSession session = sessions.get(fileId);
+        if (session == null) {
+            session = sessions.getOrCreateChunked(fileId, userId, totalChunks != null ? totalChunks : -1);
+        }
+        checkOwner(session, userId);
+        session.checkIndex(chunkIndex);
+        session.beginWrite();
+        try {
+            writeChunk(session, chunkIndex, checksum, checksumType, in);
+        } finally {
+            session.endWrite();
+        }
+    }
+
+    private void writeChunk(UploadSession session, int chunkIndex, String checksum, ChecksumType checksumType,
+                            InputStream in) throws IOException {
+        ChunkChecksum verifier = checksum != null ? ChunkChecksum.of(checksumType) : null;
+        if (verifier != null) {
+            in = verifier.wrap(in);
+        }
+        // 按序到达的分片在写入的同时累积整个文件的摘要，合并时无需再读一遍
+        boolean rewrite = session.isReceived(chunkIndex);
+        UploadSession.StreamingDigest streaming = rewrite ? null : session.digestFor(chunkIndex);
+        if (streaming != null) {
+            in = new DigestInputStream(in, streaming.getDigest());
+        }
+        if (session.isDirect()) {
+            writeAt(session, chunkIndex, in, verifier, checksum);
+        } else {
+            writePart(session, chunkIndex, in, verifier, checksum);
+        }
+        if (rewrite) {
+            session.invalidateDigest(chunkIndex);
+        } else if (streaming != null) {
+            session.commitDigest(streaming);
+        }
+    }
+
+    /**
+     * 分片先写入临时文件，校验通过后再改名为 .part，校验失败不会覆盖已有的分片
      */
-    public void saveChunk(String fileId, int chunkIndex, InputStream in) throws IOException {
-        Path dir = tempRoot.resolve(fileId);
-        Files.createDirectories(dir);
-        Path partPath = dir.resolve(chunkIndex + ".part");
-        Files.copy(in, partPath, StandardCopyOption.REPLACE_EXISTING);
+    private void writePart(UploadSession session, int chunkIndex, InputStream in,
+                           ChunkChecksum verifier, String checksum) throws IOException {
+        Path partPath = session.partPath(chunkIndex);
+        Path tmp = Files.createTempFile(session.getDir(), chunkIndex + "-", ".tmp");
+        long length;
+        try {
+            length = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            if (verifier != null && !verifier.matches(checksum)) {
+                throw new IllegalArgumentException("Checksum mismatch for chunk " + chunkIndex);
+            }
+            long previous = session.isReceived(chunkIndex) ? Files.size(partPath) : 0;
+            Files.move(tmp, partPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            sessions.markReceived(session, chunkIndex, length, previous);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
     }
 
     /**
-     * 合并所有分片并清理临时目录
+     * 把分片按偏移量写入预分配的目标文件，长度必须与声明的分片大小一致。
+     * 写入是原地覆盖：重写已接收的分片前先清除其接收标记并作废摘要，
+     * 数据校验通过并落盘后才重新标记，长度不符、校验失败或写入异常时该分片保持未接收，客户端需重传
      */
-    public Path mergeChunks(String fileId, String filename) throws IOException {
-        Path dir = tempRoot.resolve(fileId);
-        if (!Files.exists(dir)) {
-            throw new NoSuchFileException("Chunk directory does not exist: " + dir.toString());
+    private void writeAt(UploadSession session, int chunkIndex, InputStream in,
+                         ChunkChecksum verifier, String checksum) throws IOException {
+        int expected = session.expectedLength(chunkIndex);
+        if (session.isReceived(chunkIndex)) {
+            sessions.clearReceived(session, chunkIndex, expected);
+            session.invalidateDigest(chunkIndex);
+        }
+        boolean durable = false;
+        try (FileChannel target = FileChannel.open(session.getDataFile(), StandardOpenOption.WRITE);
+             ReadableByteChannel source = Channels.newChannel(in)) {
+            long written = target.transferFrom(source, session.offset(chunkIndex), expected);
+            if (written != expected || in.read() != -1) {
+                throw new IllegalArgumentException("Chunk " + chunkIndex + " does not match declared chunk size");
+            }
+            if (verifier != null && !verifier.matches(checksum)) {
+                throw new IllegalArgumentException("Checksum mismatch for chunk " + chunkIndex);
+            }
+            target.force(false);
+            durable = true;
+        } finally {
+            if (durable) {
+                sessions.markReceived(session, chunkIndex, expected, 0);
+            }
         }
+    }
+
+    /**
+     * 合并所有分片并清理临时目录
+     */
+    public Path mergeChunks(String fileId, Integer userId, String filename) throws IOException {
         Path target = tempRoot.getParent().resolve("uploads").resolve(filename);
         Files.createDirectories(target.getParent());
-
-        try (OutputStream out = Files.newOutputStream(target,
-                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
-            Files.list(dir)
-                    .filter(p -> p.getFileName().toString().endsWith(".part"))
-                    .sorted(Comparator.comparingInt(
-                            p -> Integer.parseInt(
-                                    p.getFileName().toString().replace(".part", ""))))
-                    .forEach(part -> {
-                        try (InputStream inStream = Files.newInputStream(part)) {
-                            byte[] buf = new byte[8 * 1024];
-                            int len;
-                            while ((len = inStream.read(buf)) != -1) {
-                                out.write(buf, 0, len);
-                            }
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
-                        }
-                    });
-        }
-        FileSystemUtils.deleteRecursively(dir);
+        BlobStore.StagedBlob staged = mergeChunksToBlob(fileId, userId);
+        try {
+            Files.move(staged.getTempFile(), target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            abortMerge(fileId, staged);
+            throw e;
+        }
+        completeMerge(fileId);
         return target;
     }
 
+    /**
+     * 把分片合并到 blob 暂存区
+     * 目标文件按总长度预分配，各分片由拷贝线程池按偏移量并行写入（FileChannel.transferFrom）；
+     * SHA-256 在上传时已增量累积，拷贝进行的同时当前线程只补算尚未计入的分片。
+     * 返回后会话仍保留并处于合并状态（不再接收分片），调用方登记成功后调用 completeMerge 清理，
+     * 失败时调用 abortMerge 交回暂存文件，客户端可以重试合并或继续上传
+     */
+    public BlobStore.StagedBlob mergeChunksToBlob(String fileId, Integer userId) throws IOException {
+        UploadSession session = sessions.get(fileId);
+        if (session == null) {
+            throw new NoSuchFileException("Upload session does not exist: " + fileId);
+        }
+        checkOwner(session, userId);
+        session.startMerging();
+        try {
+            return session.isDirect() ? finishDirectUpload(session) : mergeParts(session);
+        } catch (IOException | RuntimeException e) {
+            session.setMerging(false);
+            throw e;
+        }
+    }
+
+    /**
+     * 合并结果已登记，删除会话及其临时文件
+     */
+    public void completeMerge(String fileId) throws IOException {
+        UploadSession session = sessions.get(fileId);
+        if (session == null) {
+            return;
+        }
+        // 直写模式的目标文件已改名交给 blob 存储，会话目录中只剩位图和参数文件
+        sessions.remove(session);
+    }
+
+    /**
+     * 登记失败，恢复会话以便重试：直写模式把暂存文件改名回会话的目标文件，其余模式删除暂存文件。
+     * 暂存文件已不存在（已被 blob 存储接收后事务回滚）时内容无法恢复，删除会话，客户端需重新上传
+     */
+    public void abortMerge(String fileId, BlobStore.StagedBlob staged) {
+        UploadSession session = sessions.get(fileId);
+        if (session == null || !session.isDirect()) {
+            blobStore.discard(staged);
+            if (session != null) {
+                session.setMerging(false);
+            }
+            return;
+        }
+        try {
+            Files.move(staged.getTempFile(), session.getDataFile(), StandardCopyOption.ATOMIC_MOVE);
+            session.setMerging(false);
+        } catch (IOException e) {
+            System.err.println("Cannot restore upload data for " + fileId + ", discarding session: " + e.getMessage());
+            blobStore.discard(staged);
+            sessions.remove(session);
+        }
+    }
+
+    private BlobStore.StagedBlob mergeParts(UploadSession session) throws IOException {
+        // 分片序号取自会话位图，不再列目录
+        List<Path> parts = new ArrayList<>();
+        for (int index : session.receivedChunks()) {
+            parts.add(session.partPath(index));
+        }
+        long[] offsets = new long[parts.size()];
+        long total = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            offsets[i] = total;
+            total += Files.size(parts.get(i));
+        }
+
+        Path tmp = blobStore.createStagingFile();
+        String hash;
+        try (RandomAccessFile file = new RandomAccessFile(tmp.toFile(), "rw")) {
+            file.setLength(total);
+            FileChannel target = file.getChannel();
+            List<Future<?>> copies = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                Path part = parts.get(i);
+                long offset = offsets[i];
+                copies.add(copyExecutor.submit(() -> {
+                    copyPart(part, target, offset);
+                    return null;
+                }));
+            }
+            hash = digestAndAwait(session, copies);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return new BlobStore.StagedBlob(tmp, hash, total);
+    }
+
+    /**
+     * 直写模式无需合并：所有分片到齐后目标文件即为完整内容。
+     * 目标文件原子改名为新的暂存文件后交给 blob 存储，会话不再持有可写入的路径，
+     * 即使进程在登记后、清理会话前崩溃，恢复的会话也无法写入已登记的 blob（启动时因目标文件缺失被丢弃）
+     */
+    private BlobStore.StagedBlob finishDirectUpload(UploadSession session) throws IOException {
+        String hash = session.finishDigest();
+        Path staged = blobStore.createStagingFile();
+        Files.move(session.getDataFile(), staged, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new BlobStore.StagedBlob(staged, hash, session.getTotalSize());
+    }
+
+    private static void checkOwner(UploadSession session, Integer userId) throws AccessDeniedException {
+        if (!session.isOwnedBy(userId)) {
+            throw new AccessDeniedException(session.getFileId());
+        }
+    }
+
+    private String digestAndAwait(UploadSession session, List<Future<?>> copies) throws IOException {
+        IOException failure = null;
+        String hash = null;
+        try {
+            hash = session.finishDigest();
+        } catch (IOException e) {
+            failure = e;
+        }
+        // 无论摘要是否成功都要等所有拷贝结束，之后才能关闭目标文件
+        for (Future<?> copy : copies) {
+            try {
+                copy.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                copies.forEach(c -> c.cancel(true));
+                throw new InterruptedIOException("Merge interrupted");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return hash;
+    }
+
+    private static void copyPart(Path part, FileChannel target, long offset) throws IOException {
+        try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+            long size = source.size();
+            long copied = 0;
+            while (copied < size) {
+                long n = target.transferFrom(source, offset + copied, size - copied);
+                if (n <= 0) {
+                    throw new IOException("Short copy of chunk " + part.getFileName());
+                }
+                copied += n;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        copyExecutor.shutdownNow();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.Contacts;
+import com.example.springboot.repository.ContactsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 好友关系的内存邻接表
+ * 按需从 findAcceptedContactsByUserId 加载，之后由好友的同意 / 删除操作增量维护（在事务提交后生效）
+ */
+@Service
+public class ContactIndexService {
+
+    private final Map<Integer, Set<Integer>> adjacency = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ContactsRepository contactsRepository;
+
+    /**
+     * 获取用户的好友 ID 集合（只读视图）
+     */
+    public Set<Integer> getContactIds(Integer userId) {
+        return Collections.unmodifiableSet(adjacency.computeIfAbsent(userId, this::load));
+    }
+
+    /**
+     * 建立双向好友关系，只更新已加载的条目
+     */
+    public void addContact(Integer userId, Integer friendId) {
+        afterCommit(() -> {
+            adjacency.computeIfPresent(userId, (k, contacts) -> {
+                contacts.add(friendId);
+                return contacts;
+            });
+            adjacency.computeIfPresent(friendId, (k, contacts) -> {
+                contacts.add(userId);
+                return contacts;
+            });
+        });
+    }
+
+    /**
+     * 解除双向好友关系，只更新已加载的条目
+     */
+    public void removeContact(Integer userId, Integer friendId) {
+        afterCommit(() -> {
+            adjacency.computeIfPresent(userId, (k, contacts) -> {
+                contacts.remove(friendId);
+                return contacts;
+            });
+            adjacency.computeIfPresent(friendId, (k, contacts) -> {
+                contacts.remove(userId);
+                return contacts;
+            });
+        });
+    }
+
+    /**
+     * 用户下线后释放其邻接表，下次需要时重新加载
+     */
+    public void evict(Integer userId) {
+        adjacency.remove(userId);
+    }
+
+    private Set<Integer> load(Integer userId) {
+        Set<Integer> contacts = ConcurrentHashMap.newKeySet();
+        for (Contacts contact : contactsRepository.findAcceptedContactsByUserId(userId)) {
+            contacts.add(contact.getContactId());
+        }
+        return contacts;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -21,6 +21,8 @@ public class ContactService {
     UserRepository userRepository;
     @Autowired
     private UserService userService;
+    @Autowired
+    private ContactIndexService contactIndexService;
 
     public void sendFriendRequest(Integer fromUserId, Integer toUserId) {
         if (fromUserId.equals(toUserId)) {
@@ -66,13 +68,14 @@ public class ContactService {
             if (sender != null) {
                 dto.setUsername(sender.getUsername());
                 dto.setDisplayName(sender.getDisplayName());
-                dto.setAvatarUrl(sender.getAvatarUrl());
+                dto.setAvatarUrl(AvatarService.sized(sender.getAvatarUrl(), AvatarService.LIST_SIZE));
             }
 
             return dto;
         }).collect(Collectors.toList());
     }
 
+    @Transactional
     public void acceptFriendRequest(Integer fromUserId, Integer toUserId) {
         int updated = contactsRepository.acceptRequest(fromUserId, toUserId);
         if (updated == 0) {
@@ -86,6 +89,8 @@ public class ContactService {
         reverse.setStatus("accepted");
         reverse.setCreatedAt(LocalDateTime.now());
         contactsRepository.save(reverse);
+
+        contactIndexService.addContact(fromUserId, toUserId);
     }
 
     public void rejectFriendRequest(Integer fromUserId, Integer toUserId) {
@@ -126,7 +131,7 @@ public class ContactService {
                     friendInfo.put("id", friend.getId());
                     friendInfo.put("username", friend.getUsername());
                     friendInfo.put("displayName", friend.getDisplayName());
-                    friendInfo.put("avatar", friend.getAvatarUrl());
+                    friendInfo.put("avatar", AvatarService.sized(friend.getAvatarUrl(), AvatarService.LIST_SIZE));
                     friendInfo.put("online", false);  // 默认离线状态，后续可以通过WebSocket更新
                 }
                 return friendInfo;
@@ -156,6 +161,8 @@ public class ContactService {
         if (deleted == 0) {
             throw new RuntimeException("删除好友失败");
         }
+
+        contactIndexService.removeContact(userId, friendId);
     }
 }
 
@@ -0,0 +1,53 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.MessageType;
+import com.example.springboot.entity.Message;
+import com.example.springboot.repository.ConversationSummaryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 维护 conversation_summary，需在写消息的同一事务内调用
+ */
+@Service
+public class ConversationSummaryService {
+
+    private static final int PREVIEW_LENGTH = 200;
+    private static final String ENCRYPTED_PREVIEW = "[加密消息]";
+
+    @Autowired
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    /**
+     * 新消息写入后，同时更新发送方和接收方的对话摘要
+     */
+    @Transactional
+    public void recordMessage(Message message) {
+        String preview = previewOf(message);
+        // 发送方视角：自己发出的消息不计未读
+        conversationSummaryRepository.upsert(message.getSenderId(), message.getReceiverId(),
+                message.getId(), preview, message.getCreatedAt(), 0);
+        // 接收方视角：未读数加一
+        conversationSummaryRepository.upsert(message.getReceiverId(), message.getSenderId(),
+                message.getId(), preview, message.getCreatedAt(), 1);
+    }
+
+    @Transactional
+    public void markRead(Integer receiverId, Integer senderId) {
+        conversationSummaryRepository.resetUnread(receiverId, senderId);
+    }
+
+    private String previewOf(Message message) {
+        if (message.getMessageType() == MessageType.ENCRYPTED) {
+            // 密文没有预览意义
+            return ENCRYPTED_PREVIEW;
+        }
+        String content = message.getContent();
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        int end = Character.isHighSurrogate(content.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return content.substring(0, end);
+    }
+}
@@ -7,7 +7,6 @@ import com.example.springboot.dto.MessageDto;
 import com.example.springboot.entity.Message;
 import com.example.springboot.entity.User;
 import com.example.springboot.Enum.MessageType;
-import com.example.springboot.repository.MessageRepository;
 import com.example.springboot.repository.UserRepository;
 import com.example.springboot.websocket.ChatWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +15,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class E2EEService {
@@ -24,10 +24,10 @@ public class E2EEService {
     private UserRepository userRepository;
 
     @Autowired
-    private MessageRepository messageRepository;
+    private ChatWebSocketHandler chatWebSocketHandler;
 
     @Autowired
-    private ChatWebSocketHandler chatWebSocketHandler;
+    private MessagePersistenceService messagePersistenceService;
 
     /**
      * Update user's E2EE settings
@@ -107,24 +107,28 @@ public class E2EEService {
             message.setCreatedAt(LocalDateTime.now());
             message.setUpdatedAt(LocalDateTime.now());
 
-            Message savedMessage = messageRepository.save(message);
+            // The message carries its final id once persist returns, even in write-behind mode
+            CompletableFuture<Message> persisted = messagePersistenceService.persist(message);
 
             // Create MessageDto for response
             MessageDto messageDto = new MessageDto();
-            messageDto.setId(savedMessage.getId());
-            messageDto.setSenderId(savedMessage.getSenderId());
-            messageDto.setReceiverId(savedMessage.getReceiverId());
-            messageDto.setContent(savedMessage.getContent()); // Return encrypted content in content field
-            messageDto.setMessageType(savedMessage.getMessageType());
-            messageDto.setIsRead(savedMessage.getIsRead());
-            messageDto.setCreatedAt(savedMessage.getCreatedAt());
-            messageDto.setUpdatedAt(savedMessage.getUpdatedAt());
+            messageDto.setId(message.getId());
+            messageDto.setSenderId(message.getSenderId());
+            messageDto.setReceiverId(message.getReceiverId());
+            messageDto.setContent(message.getContent()); // Return encrypted content in content field
+            messageDto.setMessageType(message.getMessageType());
+            messageDto.setIsRead(message.getIsRead());
+            messageDto.setCreatedAt(message.getCreatedAt());
+            messageDto.setUpdatedAt(message.getUpdatedAt());
             
             // Include E2EE parameters for decryption
             messageDto.setEncryptedAESKey(encryptedMessageDto.getEncryptedAESKey());
             messageDto.setIv(encryptedMessageDto.getIv());
             messageDto.setIsEncrypted(true); // Mark as encrypted for frontend processing
 
+            // Acknowledge to the sender and notify the receiver only once the message is durable
+            messagePersistenceService.awaitDurable(persisted);
+
             // Send via WebSocket
             try {
                 chatWebSocketHandler.sendMessageToUser(receiver.getId(), messageDto);
@@ -0,0 +1,26 @@
+package com.example.springboot.service;
+
+import java.util.List;
+
+/**
+ * 文件的访问权限发生变化（上传、共享、撤销、删除），由 FileService 在事务内发布，
+ * 监听方在事务提交后清除受影响用户的缓存
+ */
+public class FileAccessChangedEvent {
+    private final Long fileId;
+    // 权限发生变化的用户
+    private final List<Integer> userIds;
+
+    public FileAccessChangedEvent(Long fileId, List<Integer> userIds) {
+        this.fileId = fileId;
+        this.userIds = List.copyOf(userIds);
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public List<Integer> getUserIds() {
+        return userIds;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.PermissionType;
+import com.example.springboot.config.FileProperties;
+import com.example.springboot.repository.FilePermissionRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件权限判定缓存，键为 (fileId, userId)，值为 file_acl 中的权限位掩码（没有记录为 0）
+ * 条目超过 TTL 后重新加载；收到 FileAccessChangedEvent 时在事务提交后精确清除受影响的条目
+ */
+@Service
+public class FileAclCache {
+
+    private record Key(Long fileId, Integer userId) {}
+
+    private record Entry(int mask, long loadedAt) {}
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final FilePermissionRepository filePermissionRepository;
+    private final FileProperties fileProperties;
+
+    public FileAclCache(FilePermissionRepository filePermissionRepository, FileProperties fileProperties) {
+        this.filePermissionRepository = filePermissionRepository;
+        this.fileProperties = fileProperties;
+    }
+
+    /**
+     * 用户对文件是否拥有任意一种给定权限
+     */
+    public boolean hasAny(Long fileId, Integer userId, PermissionType... types) {
+        return (getMask(fileId, userId) & PermissionType.maskOf(types)) != 0;
+    }
+
+    public int getMask(Long fileId, Integer userId) {
+        if (!fileProperties.isAclCacheEnabled()) {
+            misses.incrementAndGet();
+            return load(fileId, userId);
+        }
+        long now = System.currentTimeMillis();
+        long ttl = fileProperties.getAclCacheTtlMs();
+        Key key = new Key(fileId, userId);
+        Entry cached = entries.get(key);
+        if (cached != null && now - cached.loadedAt() < ttl) {
+            hits.incrementAndGet();
+            return cached.mask();
+        }
+        misses.incrementAndGet();
+        if (entries.size() >= fileProperties.getAclCacheMaxEntries()) {
+            evictExpired();
+            if (entries.size() >= fileProperties.getAclCacheMaxEntries()) {
+                entries.clear();
+            }
+        }
+        // 加载期间持有该键的锁，同一键上的失效会等到加载完成之后执行，不会被旧值覆盖
+        return entries.compute(key, (k, current) -> current != null && now - current.loadedAt() < ttl
+                ? current : new Entry(load(fileId, userId), now)).mask();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccessChanged(FileAccessChangedEvent event) {
+        for (Integer userId : event.getUserIds()) {
+            entries.remove(new Key(event.getFileId(), userId));
+        }
+        invalidations.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - fileProperties.getAclCacheTtlMs();
+        entries.values().removeIf(entry -> entry.loadedAt() < cutoff);
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", fileProperties.isAclCacheEnabled());
+        stats.put("size", entries.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private int load(Long fileId, Integer userId) {
+        return filePermissionRepository.findPermissions(fileId, userId).orElse(0);
+    }
+}
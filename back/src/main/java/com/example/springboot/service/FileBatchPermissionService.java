@@ -0,0 +1,241 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.PermissionType;
+import com.example.springboot.dto.FilePermissionResultDto;
+import com.example.springboot.entity.User;
+import com.example.springboot.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 批量共享与撤销文件权限
+ * 文件、用户与已有权限各用一次查询取出，权限按多行 INSERT ... ON DUPLICATE KEY UPDATE / 多行 DELETE 分批写入 file_acl，
+ * 每个 (文件, 用户名) 返回一条结果，提示文字与单个共享/撤销接口一致
+ */
+@Service
+public class FileBatchPermissionService {
+
+    // 单次请求最多的 (文件, 用户) 组合数
+    private static final int MAX_ITEMS = 10_000;
+    // 每条 SQL 写入的行数
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    private record Pair(Long fileId, Integer userId) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FileBatchPermissionService(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+                                      ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 把每个文件共享给每个用户，在目标用户已有的权限上追加；与单个共享一样，需要对文件有 READ 或 SHARE 权限
+     * @throws IllegalArgumentException 参数为空或组合数超过上限时
+     */
+    @Transactional
+    public List<FilePermissionResultDto> shareFiles(Integer userId, List<Long> fileIds, List<String> usernames,
+                                                    PermissionType permission) {
+        if (permission == null) {
+            throw new IllegalArgumentException("permission is required");
+        }
+        List<Long> files = distinct(fileIds);
+        List<String> names = distinct(usernames);
+        checkSize(files, names);
+
+        Set<Long> existing = findFileOwners(files).keySet();
+        Map<Long, Integer> callerMasks = findMasks(files, userId);
+        Map<String, User> users = findUsers(names);
+        int allowedMask = PermissionType.maskOf(PermissionType.READ, PermissionType.SHARE);
+
+        List<FilePermissionResultDto> results = new ArrayList<>(files.size() * names.size());
+        List<Pair> grants = new ArrayList<>();
+        for (Long fileId : files) {
+            boolean canShare = (callerMasks.getOrDefault(fileId, 0) & allowedMask) != 0;
+            for (String name : names) {
+                User target = users.get(name);
+                String message;
+                boolean success = false;
+                if (!existing.contains(fileId)) {
+                    message = "File not found";
+                } else if (target == null) {
+                    message = "Target user not found";
+                } else if (!canShare) {
+                    message = "no permission to share this file";
+                } else {
+                    grants.add(new Pair(fileId, target.getId()));
+                    message = "File shared successfully";
+                    success = true;
+                }
+                results.add(new FilePermissionResultDto(fileId, name, success, message));
+            }
+        }
+
+        for (List<Pair> batch : partition(grants)) {
+            StringBuilder sql = new StringBuilder("INSERT INTO file_acl (file_id, user_id, permissions) VALUES ");
+            List<Object> args = new ArrayList<>(batch.size() * 3);
+            for (int i = 0; i < batch.size(); i++) {
+                sql.append(i > 0 ? ", (?, ?, ?)" : "(?, ?, ?)");
+                args.add(batch.get(i).fileId());
+                args.add(batch.get(i).userId());
+                args.add(permission.bit());
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE permissions = permissions | VALUES(permissions)");
+            jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+        publish(grants);
+        return results;
+    }
+
+    /**
+     * 撤销每个用户对每个文件的全部权限；需要对文件有 SHARE 权限，文件上传者自己的权限不能被撤销
+     * @throws IllegalArgumentException 参数为空或组合数超过上限时
+     */
+    @Transactional
+    public List<FilePermissionResultDto> revokeFiles(Integer userId, List<Long> fileIds, List<String> usernames) {
+        List<Long> files = distinct(fileIds);
+        List<String> names = distinct(usernames);
+        checkSize(files, names);
+
+        Map<Long, Integer> owners = findFileOwners(files);
+        Map<Long, Integer> callerMasks = findMasks(files, userId);
+        Map<String, User> users = findUsers(names);
+        Set<Pair> granted = users.isEmpty() ? Set.of() : findPairs(files,
+                users.values().stream().map(User::getId).toList());
+
+        List<FilePermissionResultDto> results = new ArrayList<>(files.size() * names.size());
+        List<Pair> revokes = new ArrayList<>();
+        for (Long fileId : files) {
+            boolean canRevoke = PermissionType.SHARE.isIn(callerMasks.getOrDefault(fileId, 0));
+            for (String name : names) {
+                User target = users.get(name);
+                Pair pair = target != null ? new Pair(fileId, target.getId()) : null;
+                String message;
+                boolean success = false;
+                if (!owners.containsKey(fileId)) {
+                    message = "File not found";
+                } else if (target == null) {
+                    message = "Target user not found";
+                } else if (!canRevoke) {
+                    message = "no permission to revoke on this file";
+                } else if (target.getId().equals(owners.get(fileId))) {
+                    message = "Cannot revoke the uploader's permissions";
+                } else if (!granted.contains(pair)) {
+                    message = "No permissions found for this user on the file";
+                } else {
+                    revokes.add(pair);
+                    message = "File permission revoked successfully";
+                    success = true;
+                }
+                results.add(new FilePermissionResultDto(fileId, name, success, message));
+            }
+        }
+
+        for (List<Pair> batch : partition(revokes)) {
+            String rows = String.join(", ", Collections.nCopies(batch.size(), "(?, ?)"));
+            List<Object> args = new ArrayList<>(batch.size() * 2);
+            for (Pair pair : batch) {
+                args.add(pair.fileId());
+                args.add(pair.userId());
+            }
+            jdbcTemplate.update("DELETE FROM file_acl WHERE (file_id, user_id) IN (" + rows + ")", args.toArray());
+        }
+        publish(revokes);
+        return results;
+    }
+
+    // 每个文件发布一次事件，事务提交后由权限缓存和文件列表缓存清除受影响的用户
+    private void publish(List<Pair> changed) {
+        Map<Long, List<Integer>> byFile = changed.stream().collect(Collectors.groupingBy(
+                Pair::fileId, LinkedHashMap::new, Collectors.mapping(Pair::userId, Collectors.toList())));
+        byFile.forEach((fileId, userIds) -> eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, userIds)));
+    }
+
+    // 文件 ID -> 上传者 ID，不存在的文件不在结果中
+    private Map<Long, Integer> findFileOwners(List<Long> files) {
+        Map<Long, Integer> owners = new HashMap<>();
+        jdbcTemplate.query("SELECT id, user_id FROM file_storage WHERE id IN (" + placeholders(files) + ")",
+                rs -> {
+                    owners.put(rs.getLong(1), rs.getInt(2));
+                }, files.toArray());
+        return owners;
+    }
+
+    // 单个用户对各文件的权限位掩码
+    private Map<Long, Integer> findMasks(List<Long> files, Integer userId) {
+        Map<Long, Integer> masks = new HashMap<>();
+        List<Object> args = new ArrayList<>(files);
+        args.add(userId);
+        jdbcTemplate.query("SELECT file_id, permissions FROM file_acl WHERE file_id IN (" + placeholders(files)
+                        + ") AND user_id = ?",
+                rs -> {
+                    masks.put(rs.getLong(1), rs.getInt(2));
+                }, args.toArray());
+        return masks;
+    }
+
+    private Set<Pair> findPairs(List<Long> files, List<Integer> userIds) {
+        Set<Pair> pairs = new HashSet<>();
+        List<Object> args = new ArrayList<>(files);
+        args.addAll(userIds);
+        jdbcTemplate.query("SELECT file_id, user_id FROM file_acl WHERE file_id IN (" + placeholders(files)
+                        + ") AND user_id IN (" + placeholders(userIds) + ")",
+                rs -> {
+                    pairs.add(new Pair(rs.getLong(1), rs.getInt(2)));
+                }, args.toArray());
+        return pairs;
+    }
+
+    private Map<String, User> findUsers(List<String> names) {
+        return userRepository.findByUsernameIn(names).stream()
+                .collect(Collectors.toMap(User::getUsername, u -> u, (a, b) -> a));
+    }
+
+    private static void checkSize(List<Long> files, List<String> names) {
+        if (files.isEmpty() || names.isEmpty()) {
+            throw new IllegalArgumentException("fileIds and usernames must not be empty");
+        }
+        if ((long) files.size() * names.size() > MAX_ITEMS) {
+            throw new IllegalArgumentException("Too many items, at most " + MAX_ITEMS + " file/user pairs per request");
+        }
+    }
+
+    private static <T> List<T> distinct(Collection<T> values) {
+        if (values == null) {
+            return List.of();
+        }
+        Set<T> set = new LinkedHashSet<>(values);
+        set.remove(null);
+        return new ArrayList<>(set);
+    }
+
+    private static List<List<Pair>> partition(List<Pair> pairs) {
+        List<List<Pair>> batches = new ArrayList<>();
+        for (int from = 0; from < pairs.size(); from += WRITE_BATCH_SIZE) {
+            batches.add(pairs.subList(from, Math.min(from + WRITE_BATCH_SIZE, pairs.size())));
+        }
+        return batches;
+    }
+
+    private static String placeholders(Collection<?> values) {
+        return String.join(", ", Collections.nCopies(values.size(), "?"));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.FileType;
+import com.example.springboot.dto.FilePageDto;
+import com.example.springboot.entity.fileStorage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件列表查询
+ * 用户有权限的文件通过 file_acl 与 file_storage 的一次连接查询取出（每个文件每个用户一行，无需去重），
+ * 按 (排序字段, id) 做游标分页；每个用户的首页结果缓存在内存中，收到 FileAccessChangedEvent（上传、共享、撤销、删除）后失效
+ */
+@Service
+public class FileListService {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    // 超过该用户数时整体清空，之后按需重新查询
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // 用户 ID -> (查询条件 -> 首页)
+    private final Map<Integer, Map<String, FilePageDto>> firstPages = new ConcurrentHashMap<>();
+    // 每次失效加一；查询期间发生过失效的结果不写入缓存，避免旧结果覆盖失效
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param sort   uploadedAt（默认）或 fileSize
+     * @param order  desc（默认）或 asc
+     * @param cursor 上一页返回的 nextCursor，为空时读取首页
+     */
+    public FilePageDto listFiles(Integer userId, FileType fileType, String sort, String order,
+                                 String cursor, Integer size) {
+        String sortField = sort == null ? "uploadedAt" : sort;
+        if (!sortField.equals("uploadedAt") && !sortField.equals("fileSize")) {
+            throw new RuntimeException("不支持的排序字段: " + sort);
+        }
+        boolean ascending = "asc".equalsIgnoreCase(order);
+        if (order != null && !ascending && !"desc".equalsIgnoreCase(order)) {
+            throw new RuntimeException("不支持的排序方向: " + order);
+        }
+        int pageSize = (size == null) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        if (cursor != null) {
+            return query(userId, fileType, sortField, ascending, decodeCursor(cursor, sortField), pageSize);
+        }
+        String key = fileType + "|" + sortField + "|" + ascending + "|" + pageSize;
+        Map<String, FilePageDto> pages = firstPages.get(userId);
+        FilePageDto cached = pages != null ? pages.get(key) : null;
+        if (cached != null) {
+            return cached;
+        }
+        long version = invalidations.get();
+        FilePageDto page = query(userId, fileType, sortField, ascending, null, pageSize);
+        if (invalidations.get() != version) {
+            return page;
+        }
+        if (firstPages.size() > MAX_CACHED_USERS) {
+            firstPages.clear();
+        }
+        firstPages.computeIfAbsent(userId, k -> new ConcurrentHashMap<>()).put(key, page);
+        return page;
+    }
+
+    /**
+     * 用户可见的文件发生变化，在事务提交后清除其首页缓存
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccessChanged(FileAccessChangedEvent event) {
+        invalidations.incrementAndGet();
+        event.getUserIds().forEach(firstPages::remove);
+    }
+
+    private FilePageDto query(Integer userId, FileType fileType, String sortField, boolean ascending,
+                              Object[] after, int pageSize) {
+        String direction = ascending ? "ASC" : "DESC";
+        String compare = ascending ? ">" : "<";
+        StringBuilder jpql = new StringBuilder(
+                "SELECT f FROM filePermission p JOIN p.file f JOIN FETCH f.user WHERE p.userId = :userId");
+        if (fileType != null) {
+            jpql.append(" AND f.fileType = :fileType");
+        }
+        if (after != null) {
+            jpql.append(" AND (f.").append(sortField).append(' ').append(compare).append(" :afterValue")
+                    .append(" OR (f.").append(sortField).append(" = :afterValue AND f.id ")
+                    .append(compare).append(" :afterId))");
+        }
+        jpql.append(" ORDER BY f.").append(sortField).append(' ').append(direction)
+                .append(", f.id ").append(direction);
+
+        TypedQuery<fileStorage> query = entityManager.createQuery(jpql.toString(), fileStorage.class)
+                .setParameter("userId", userId)
+                .setMaxResults(pageSize + 1);
+        if (fileType != null) {
+            query.setParameter("fileType", fileType);
+        }
+        if (after != null) {
+            query.setParameter("afterValue", after[0]);
+            query.setParameter("afterId", after[1]);
+        }
+        List<fileStorage> rows = query.getResultList();
+
+        // 多取一条用于判断是否还有更多
+        boolean hasMore = rows.size() > pageSize;
+        List<fileStorage> files = new ArrayList<>(rows.subList(0, Math.min(pageSize, rows.size())));
+        String nextCursor = hasMore ? encodeCursor(files.get(files.size() - 1), sortField) : null;
+        return new FilePageDto(files, nextCursor, hasMore);
+    }
+
+    private static String encodeCursor(fileStorage last, String sortField) {
+        String raw = sortField.equals("fileSize")
+                ? "s:" + last.getFileSize() + ":" + last.getId()
+                : "u:" + last.getUploadedAt() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object[] decodeCursor(String cursor, String sortField) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String prefix = sortField.equals("fileSize") ? "s:" : "u:";
+            int idStart = raw.lastIndexOf(':');
+            if (!raw.startsWith(prefix) || idStart <= prefix.length()) {
+                throw new IllegalArgumentException(raw);
+            }
+            String value = raw.substring(prefix.length(), idStart);
+            Long id = Long.parseLong(raw.substring(idStart + 1));
+            return sortField.equals("fileSize")
+                    ? new Object[]{Long.parseLong(value), id}
+                    : new Object[]{LocalDateTime.parse(value), id};
+        } catch (RuntimeException e) {
+            throw new RuntimeException("无效的游标");
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.springboot.service;
 
 import com.example.springboot.Enum.FileType;
 import com.example.springboot.Enum.PermissionType;
+import com.example.springboot.dto.FilePageDto;
 import com.example.springboot.entity.User;
 import com.example.springboot.entity.filePermission;
 import com.example.springboot.entity.fileStorage;
@@ -9,141 +10,147 @@ import com.example.springboot.repository.FilePermissionRepository;
 import com.example.springboot.repository.FileStorageRepository;
 import com.example.springboot.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.context.ApplicationEventPublisher;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.util.UriUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class FileService {
     private final FileStorageRepository fileStorageRepository;
     private final FilePermissionRepository filePermissionRepository;
     private final UserRepository userRepository;
+    private final FileStreamService fileStreamService;
+    private final ThumbnailService thumbnailService;
+    private final BlobStore blobStore;
+    private final FileListService fileListService;
+    private final FileAclCache fileAclCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // 超过该条目数时整体清空，之后按需重新判断
+    private static final int MAX_MEDIA_TYPE_ENTRIES = 10_000;
+    private final Map<Long, MediaType> mediaTypes = new ConcurrentHashMap<>();
 
 
     @Value("${file.upload-dir}")
     private String uploadDir;  // 配置上传文件的存储路径
 
-    public FileService(FileStorageRepository fileStorageRepository, FilePermissionRepository filePermissionRepository, UserRepository userRepository) {
+    public FileService(FileStorageRepository fileStorageRepository, FilePermissionRepository filePermissionRepository, UserRepository userRepository,
+                       FileStreamService fileStreamService, ThumbnailService thumbnailService, BlobStore blobStore,
+                       FileListService fileListService, FileAclCache fileAclCache,
+                       ApplicationEventPublisher eventPublisher) {
         this.fileStorageRepository = fileStorageRepository;
         this.filePermissionRepository = filePermissionRepository;
         this.userRepository = userRepository;
+        this.fileStreamService = fileStreamService;
+        this.thumbnailService = thumbnailService;
+        this.blobStore = blobStore;
+        this.fileListService = fileListService;
+        this.fileAclCache = fileAclCache;
+        this.eventPublisher = eventPublisher;
     }
 
-    // 获取当前用户上传的文件和共享文件
-    public List<fileStorage> getUserFiles(Integer userId) {
-        // 获取用户有权限的文件
-        List<filePermission> Permissions = filePermissionRepository.findByUserId(userId);
-        List<fileStorage> files = Permissions.stream()
-                .map(filePermission::getFile)
-                .toList();
-        return files;
+    // 获取当前用户上传的文件和共享文件，按游标分页
+    public FilePageDto getUserFiles(Integer userId, FileType fileType, String sort, String order,
+                                    String cursor, Integer size) {
+        return fileListService.listFiles(userId, fileType, sort, order, cursor, size);
     }
 
     // 处理文件上传后写入数据库
+    @Transactional(rollbackFor = IOException.class)
     public fileStorage uploadFile(Integer userId, MultipartFile file, String fileName, FileType fileType, long fileSize) throws IOException {
         // 如果没有传入文件名，使用原始文件名
         if (fileName == null || fileName.isEmpty()) {
             fileName = file.getOriginalFilename();
         }
 
-        // 构建存储文件的路径
-        Path path = Paths.get(uploadDir, fileName);
-        // 创建文件并存储
-        File destFile = path.toFile();
-        file.transferTo(destFile);
+        // 流式写入暂存区并计算 SHA-256，相同内容只保存一份
+        BlobStore.StagedBlob staged;
+        try (InputStream in = file.getInputStream()) {
+            staged = blobStore.stage(in);
+        }
+        try {
+            return registerUpload(userId, staged, fileName, fileType);
+        } catch (IOException | RuntimeException e) {
+            blobStore.discard(staged);
+            throw e;
+        }
+    }
+
+    // 将暂存内容登记为用户的文件，文件大小以实际写入的字节数为准；失败时暂存文件由调用方处理
+    @Transactional(rollbackFor = IOException.class)
+    public fileStorage registerUpload(Integer userId, BlobStore.StagedBlob staged, String fileName, FileType fileType) throws IOException {
+        blobStore.store(staged);
 
         // 保存文件的元数据到数据库
         fileStorage stored = new fileStorage();
         stored.setUserId(userId);
         stored.setFileName(fileName);
         stored.setFileType(fileType);
-        stored.setFileSize(fileSize);
-        stored.setFileUrl(path.toString());
+        stored.setFileSize(staged.getSize());
+        stored.setContentHash(staged.getHash());
+        // 同一内容可被多条记录引用，file_url 需保持唯一
+        stored.setFileUrl("blob/" + staged.getHash() + "/" + UUID.randomUUID());
         stored = fileStorageRepository.save(stored);
 
-        // 读
-        filePermission permission_read = new filePermission();
-        permission_read.setUserId(userId);                // 上传者的 userId
-        permission_read.setFile(stored);                  // 关联到刚才保存的 fileStorage
-        permission_read.setPermission(PermissionType.READ); // 或者 WRITE/DELETE/SHARE，看你业务需求
-        filePermissionRepository.save(permission_read);
-        // 删除
-        filePermission permission_delete = new filePermission();
-        permission_delete.setUserId(userId);
-        permission_delete.setFile(stored);
-        permission_delete.setPermission(PermissionType.DELETE);
-        filePermissionRepository.save(permission_delete);
-        // 共享
-        filePermission permission_share = new filePermission();
-        permission_share.setUserId(userId);
-        permission_share.setFile(stored);
-        permission_share.setPermission(PermissionType.SHARE);
-        filePermissionRepository.save(permission_share);
+        // 上传者拥有全部权限，一行记录
+        filePermission permission = new filePermission();
+        permission.setUserId(userId);
+        permission.setFile(stored);
+        permission.setPermissions(PermissionType.maskOf(PermissionType.READ, PermissionType.DELETE, PermissionType.SHARE));
+        filePermissionRepository.save(permission);
+        eventPublisher.publishEvent(new FileAccessChangedEvent(stored.getId(), List.of(userId)));
         return stored;
     }
 
-    // 根据文件 ID 获取文件并返回响应实体
-    public ResponseEntity<InputStreamResource> downloadFile(Long fileId, Integer userId) throws IOException {
+    // 根据文件 ID 获取文件并返回响应实体，支持断点续传与条件请求
+    public ResponseEntity<?> downloadFile(Long fileId, Integer userId, HttpServletRequest request) throws IOException {
         // ------------------- 0. 从数据库查询文件元数据（只查一次） -------------------
         fileStorage fileMeta = fileStorageRepository.findById(fileId)
                 .orElseThrow(() -> new RuntimeException("File not found")); // 找不到文件记录则抛异常
 
-        boolean hasReadPermission = filePermissionRepository.existsByFileIdAndUserIdAndPermissionIn(
-                fileId,
-                userId,
-                List.of(PermissionType.READ)
-        );
+        boolean hasReadPermission = fileAclCache.hasAny(fileId, userId, PermissionType.READ);
         if (!hasReadPermission) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
         }
         // 2. 本地磁盘路径
-        Path path = Paths.get(uploadDir).resolve(fileMeta.getFileName());
-        File fileToDownload = path.toFile();
-        if (!fileToDownload.exists()) {
+        Path path = resolvePath(fileMeta);
+        if (!Files.exists(path)) {
             throw new RuntimeException("File not found on server");
         }
 
-        // 3. 构造资源流
-        InputStreamResource resource = new InputStreamResource(new FileInputStream(fileToDownload));
-
-        // 4. 推断 MIME 类型
-        String mimeType = Files.probeContentType(path);
-        if (mimeType == null) {
-            // fallback
-            mimeType = "application/octet-stream";
-        }        // 5. 设置下载时的文件名，处理中文或特殊字符
+        // 3. 推断 MIME 类型（按文件缓存）
+        MediaType mediaType = resolveMediaType(fileMeta, path);
+        // 4. 设置下载时的文件名，处理中文或特殊字符
         String encodedFileName = UriUtils.encode(fileMeta.getFileName(), StandardCharsets.UTF_8);
         String contentDisposition = "attachment; filename=\"" + encodedFileName + "\"; filename*=utf-8''" + encodedFileName;
-        // 6. 构造响应
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
-                .contentType(MediaType.parseMediaType(mimeType))
-                .contentLength(fileToDownload.length())
-                .body(resource);
+        // 5. 按 Range 等请求头输出全部或部分内容
+        return fileStreamService.serve(fileMeta, path, mediaType, contentDisposition, request);
     }
 
 
     // 根据文件 ID 删除文件
     @Transactional
     public String deleteFile(Long fileId, Integer userId) {
-        boolean hasReadOrDeletePermission = filePermissionRepository.existsByFileIdAndUserIdAndPermissionIn(
-                fileId,
-                userId,
-                List.of(PermissionType.DELETE)
-        );
+        boolean hasReadOrDeletePermission = fileAclCache.hasAny(fileId, userId, PermissionType.DELETE);
         // 1.3 如果两者都不满足，则直接返回 403 Forbidden（无权下载）
         if (!hasReadOrDeletePermission) {
             return "no permission to delete this file";
@@ -156,7 +163,17 @@ public class FileService {
             return "File not found";
         }
 
-        fileStorage file = fileOptional.get();        // 构建文件路径
+        fileStorage file = fileOptional.get();
+        eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, filePermissionRepository.findUserIdsByFileId(fileId)));
+        // blob 文件只减少引用，最后一个引用删除时才删除磁盘文件
+        if (file.getContentHash() != null) {
+            filePermissionRepository.deleteByFileId(fileId);
+            fileStorageRepository.delete(file);
+            blobStore.release(file.getContentHash());
+            mediaTypes.remove(fileId);
+            return "File deleted successfully";
+        }
+        // 构建文件路径
         String filePath = uploadDir + File.separator + file.getFileName();
         File fileToDelete = new File(filePath);
 
@@ -169,14 +186,17 @@ public class FileService {
         } else {
             filePermissionRepository.deleteByFileId(fileId);
             fileStorageRepository.delete(file);
+            mediaTypes.remove(fileId);
             return "File not found on server";
         }
         // 删除数据库中的记录
         filePermissionRepository.deleteByFileId(fileId);
-        fileStorageRepository.delete(file);        return "File deleted successfully";
+        fileStorageRepository.delete(file);
+        mediaTypes.remove(fileId);        return "File deleted successfully";
     }
 
     // 文件共享
+    @Transactional
     public String shareFile(Integer userId, String targetUsername, Long fileId, PermissionType permission) {
         // 查找文件
         fileStorage file = fileStorageRepository.findById(fileId).orElse(null);
@@ -191,68 +211,109 @@ public class FileService {
         }
 
         // 1.2 如果不是上传者，再判断是否在 file_permission 表中具有 READ 或 SHARE 权限
-        boolean hasReadOrSharePermission = filePermissionRepository.existsByFileIdAndUserIdAndPermissionIn(
-                fileId,
-                userId,
-                List.of(PermissionType.SHARE, PermissionType.READ)
-        );        // 1.3 如果两者都不满足，则直接返回 403 Forbidden（无权下载）
+        boolean hasReadOrSharePermission = fileAclCache.hasAny(fileId, userId, PermissionType.SHARE, PermissionType.READ);        // 1.3 如果两者都不满足，则直接返回 403 Forbidden（无权下载）
         if (!hasReadOrSharePermission) {
             return "no permission to share this file";
         }
-        // 创建文件权限
-        filePermission filePermission = new filePermission();
-        filePermission.setUserId(targetUser.getId()); // 使用目标用户的ID
-        filePermission.setFile(file);
-        filePermission.setPermission(permission);
-
-        // 保存权限
-        filePermissionRepository.save(filePermission);
+        // 在目标用户已有的权限上追加
+        filePermissionRepository.grant(fileId, targetUser.getId(), permission.bit());
+        eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, List.of(targetUser.getId())));
 
         return "File shared successfully";
     }
 
-    public ResponseEntity<byte[]> demoFile(Long fileId, Integer userId) {
+    public ResponseEntity<?> demoFile(Long fileId, Integer userId, HttpServletRequest request) {
         // 1) 查询数据库记录
         fileStorage fileMeta = fileStorageRepository.findById(fileId)
                 .orElseThrow(() -> new RuntimeException("File not found")); // 找不到文件记录则抛异常
 
         // 2) 权限校验
-        boolean hasReadPermission = filePermissionRepository.existsByFileIdAndUserIdAndPermissionIn(
-                fileId,
-                userId,
-                List.of(PermissionType.READ)
-        );
+        boolean hasReadPermission = fileAclCache.hasAny(fileId, userId, PermissionType.READ);
         if (!hasReadPermission) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
         }
 
-        // 3) 构造路径并读取文件字节
-        Path path = Paths.get(uploadDir).resolve(fileMeta.getFileName());
-        File fileToDownload = path.toFile();
-        if (!fileToDownload.exists()) {
+        // 3) 构造路径
+        Path path = resolvePath(fileMeta);
+        if (!Files.exists(path)) {
             throw new RuntimeException("File not found on server");
         }
 
-        byte[] data;
+        // 4) 设置响应头为 inline，按 Range 流式输出，不把整个文件读入内存
+        String filename = fileMeta.getFileName();
+        String contentDisposition = ContentDisposition.inline().filename(filename).build().toString();
         try {
-            data = Files.readAllBytes(path);
+            return fileStreamService.serve(fileMeta, path, resolveMediaType(fileMeta, path), contentDisposition, request);
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+    }
+
+    // 获取图片缩略图，按需生成并缓存在磁盘
+    public ResponseEntity<?> getThumbnail(Long fileId, Integer userId, int size, HttpServletRequest request) throws IOException {
+        fileStorage fileMeta = fileStorageRepository.findById(fileId)
+                .orElseThrow(() -> new RuntimeException("File not found"));
+
+        boolean hasReadPermission = fileAclCache.hasAny(fileId, userId, PermissionType.READ);
+        if (!hasReadPermission) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        if (!ThumbnailService.isSupported(fileMeta.getFileName())) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Thumbnail not supported for this file type");
+        }
 
-        // 4) 判断 MIME 类型
-        String filename = fileStorageRepository.findFilenameById(fileId);
-        String ext = getFileExtension(filename);
-        MediaType mediaType = getMediaType(ext);
+        Path path = resolvePath(fileMeta);
+        if (!Files.exists(path)) {
+            throw new RuntimeException("File not found on server");
+        }
+
+        // 源文件指纹：blob 文件直接用内容摘要；旧文件用路径、长度与修改时间，被覆盖后会生成新的缩略图
+        String fingerprint = fileMeta.getContentHash() != null
+                ? "sha256:" + fileMeta.getContentHash()
+                : path.toAbsolutePath() + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+        Path thumbnail = thumbnailService.getThumbnail(path, fingerprint, fileMeta.getFileName(), ThumbnailService.normalizeSize(size));
+        releaseAfterResponse(() -> thumbnailService.release(thumbnail));
+        MediaType mediaType = thumbnail.getFileName().toString().endsWith(".png") ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+        String contentDisposition = ContentDisposition.inline().filename(thumbnail.getFileName().toString()).build().toString();
+        return fileStreamService.serve(fileMeta, thumbnail, mediaType, contentDisposition, request);
+    }
 
-        // 5) 设置响应头，改为 inline
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(mediaType);
-        headers.setContentDisposition(
-                ContentDisposition.inline().filename(filename).build()
-        );
+    // 请求结束（响应体写完）后执行；没有请求上下文时立即执行
+    private static void releaseAfterResponse(Runnable release) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            release.run();
+            return;
+        }
+        attributes.registerDestructionCallback(ThumbnailService.class.getName() + ".release",
+                release, RequestAttributes.SCOPE_REQUEST);
+    }
 
-        return new ResponseEntity<>(data, headers, HttpStatus.OK);
+    // blob 存储中的文件按内容摘要定位，旧数据仍在上传目录下按文件名定位
+    private Path resolvePath(fileStorage fileMeta) {
+        if (fileMeta.getContentHash() != null) {
+            return blobStore.resolve(fileMeta.getContentHash());
+        }
+        return Paths.get(uploadDir).resolve(fileMeta.getFileName());
+    }
+
+    // 按文件 ID 缓存 MIME 类型，先按扩展名判断，无法判断时再探测文件内容
+    private MediaType resolveMediaType(fileStorage fileMeta, Path path) {
+        if (mediaTypes.size() >= MAX_MEDIA_TYPE_ENTRIES) {
+            mediaTypes.clear();
+        }
+        return mediaTypes.computeIfAbsent(fileMeta.getId(), id -> {
+            MediaType mediaType = getMediaType(getFileExtension(fileMeta.getFileName()));
+            if (!MediaType.APPLICATION_OCTET_STREAM.equals(mediaType)) {
+                return mediaType;
+            }
+            try {
+                String probed = Files.probeContentType(path);
+                return probed != null ? MediaType.parseMediaType(probed) : mediaType;
+            } catch (IOException | InvalidMediaTypeException e) {
+                return mediaType;
+            }
+        });
     }
 
     private String getFileExtension(String filename) {
@@ -274,10 +335,12 @@ public class FileService {
         }
     }
 
-    // 撤销文件的共享权限
-    public String revokeFilePermission(Long fileId, Integer targetUserId) {
+    // 撤销文件的共享权限；与批量撤销一致，需要对文件有 SHARE 权限，文件上传者自己的权限不能被撤销
+    @Transactional
+    public String revokeFilePermission(Integer userId, Long fileId, Integer targetUserId) {
         // 查找文件
-        if (!fileStorageRepository.existsById(fileId)) {
+        fileStorage file = fileStorageRepository.findById(fileId).orElse(null);
+        if (file == null) {
             return "File not found";
         }
 
@@ -286,12 +349,20 @@ public class FileService {
             return "Target user not found";
         }
 
+        if (!fileAclCache.hasAny(fileId, userId, PermissionType.SHARE)) {
+            return "no permission to revoke on this file";
+        }
+        if (targetUserId.equals(file.getUserId())) {
+            return "Cannot revoke the uploader's permissions";
+        }
+
         // 查找权限记录
         Optional<filePermission> filePermissionOptional = filePermissionRepository.findByFileIdAndUserId(fileId, targetUserId);
 
         // 如果权限记录存在，则删除它
         if (filePermissionOptional.isPresent()) {
             filePermissionRepository.deleteByFileIdAndUserId(fileId, targetUserId);
+            eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, List.of(targetUserId)));
             return "File permission revoked successfully";
         } else {
             return "No permissions found for this user on the file";
@@ -0,0 +1,159 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.fileStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * 文件内容输出，支持 Range / If-Range / If-None-Match / If-Modified-Since
+ * 容器支持 sendfile 时（Tomcat NIO）只设置请求属性，由容器直接从文件发送到 socket；
+ * 否则退回 ResourceRegion / 流式输出，两种方式都不会把整个文件读入堆内存
+ */
+@Service
+public class FileStreamService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    public ResponseEntity<?> serve(fileStorage fileMeta, Path path, MediaType mediaType,
+                                   String contentDisposition, HttpServletRequest request) throws IOException {
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String etag = etag(fileMeta, length, lastModified);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (isNotModified(request, etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        headers.setContentType(mediaType);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            return body(HttpStatus.OK, headers, path, 0, length, length, request);
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return unsatisfiable(length);
+        }
+        // 多段范围不常见，按规范可以忽略 Range 返回完整内容
+        if (ranges.size() != 1) {
+            return body(HttpStatus.OK, headers, path, 0, length, length, request);
+        }
+        HttpRange range = ranges.get(0);
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            return unsatisfiable(length);
+        }
+        if (start >= length || start > end) {
+            return unsatisfiable(length);
+        }
+        return body(HttpStatus.PARTIAL_CONTENT, headers, path, start, end - start + 1, length, request);
+    }
+
+    private ResponseEntity<?> body(HttpStatus status, HttpHeaders headers, Path path,
+                                   long start, long count, long length, HttpServletRequest request) throws IOException {
+        if (count > 0 && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            headers.setContentLength(count);
+            if (status == HttpStatus.PARTIAL_CONTENT) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + count - 1) + "/" + length);
+            }
+            request.setAttribute(SENDFILE_FILENAME, path.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            // Content-Range 与 Content-Length 由 ResourceRegionHttpMessageConverter 设置
+            return ResponseEntity.status(status).headers(headers)
+                    .body(new ResourceRegion(new FileSystemResource(path), start, count));
+        }
+        headers.setContentLength(count);
+        return ResponseEntity.status(status).headers(headers)
+                .body(new InputStreamResource(Files.newInputStream(path)));
+    }
+
+    private ResponseEntity<?> unsatisfiable(long length) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .build();
+    }
+
+    /**
+     * 强 ETag：文件 ID、上传时间来自数据库记录，长度与修改时间来自磁盘，文件被覆盖后随之变化
+     */
+    private String etag(fileStorage fileMeta, long length, long lastModified) {
+        long uploadedAt = fileMeta.getUploadedAt() != null ? fileMeta.getUploadedAt().toEpochSecond(ZoneOffset.UTC) : 0;
+        return "\"" + fileMeta.getId() + "-" + Long.toHexString(uploadedAt)
+                + "-" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 为 ETag 时要求强匹配，为日期时要求与最后修改时间一致；不匹配则忽略 Range
+     */
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.trim().equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
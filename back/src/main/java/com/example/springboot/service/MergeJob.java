@@ -0,0 +1,80 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.MergeStatus;
+import com.example.springboot.entity.fileStorage;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * 异步分片合并任务的状态，供客户端轮询
+ */
+public class MergeJob {
+    private final String jobId;
+    private final Integer ownerId;
+    private final String fileId;
+    private final String filename;
+    private volatile MergeStatus status = MergeStatus.PENDING;
+    private volatile fileStorage file;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    public MergeJob(String jobId, Integer ownerId, String fileId, String filename) {
+        this.jobId = jobId;
+        this.ownerId = ownerId;
+        this.fileId = fileId;
+        this.filename = filename;
+    }
+
+    void start() {
+        status = MergeStatus.RUNNING;
+    }
+
+    void complete(fileStorage stored) {
+        file = stored;
+        finishedAt = System.currentTimeMillis();
+        status = MergeStatus.DONE;
+    }
+
+    void fail(String message) {
+        error = message;
+        finishedAt = System.currentTimeMillis();
+        status = MergeStatus.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == MergeStatus.DONE || status == MergeStatus.FAILED;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    @JsonIgnore
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public MergeStatus getStatus() {
+        return status;
+    }
+
+    public fileStorage getFile() {
+        return file;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @JsonIgnore
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
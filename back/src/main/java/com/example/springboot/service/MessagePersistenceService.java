@@ -0,0 +1,370 @@
+package com.example.springboot.service;
+
+import com.example.springboot.config.MessageProperties;
+import com.example.springboot.entity.Message;
+import com.example.springboot.journal.JournalPosition;
+import com.example.springboot.journal.MessageJournal;
+import com.example.springboot.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 消息持久化
+ * 默认每条消息在独立事务中保存；开启 message.write-behind 后，消息预先分配 ID 并放入有界内存日志，
+ * 由单个写线程攒批，以多行 INSERT 在一个事务中提交（group commit），同批发送方共享一次提交。
+ * 再开启 message.journal-enabled 时，消息先追加到本地日志，按刷盘策略持久化后即向发送方确认，
+ * 写线程成为日志的应用者，写库后推进检查点；启动时先重放检查点之后的记录
+ */
+@Service
+public class MessagePersistenceService {
+
+    private static final String INSERT_PREFIX = "INSERT INTO message " +
+            "(id, sender_id, receiver_id, content, message_type, is_read, encrypted_aes_key, iv, created_at, updated_at) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final MessageRepository messageRepository;
+    private final ConversationSummaryService conversationSummaryService;
+    private final UnreadCounterCache unreadCounterCache;
+    private final MessageIdAllocator messageIdAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageProperties properties;
+
+    private final BlockingQueue<PendingMessage> pendingQueue = new LinkedBlockingQueue<>();
+    // 内存日志容量：入队前获取，写库后释放
+    private Semaphore slots;
+    private MessageJournal diskJournal;
+    private Thread flusher;
+    private volatile boolean running;
+
+    public MessagePersistenceService(MessageRepository messageRepository,
+                                     ConversationSummaryService conversationSummaryService,
+                                     UnreadCounterCache unreadCounterCache,
+                                     MessageIdAllocator messageIdAllocator,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     MessageProperties properties) {
+        this.messageRepository = messageRepository;
+        this.conversationSummaryService = conversationSummaryService;
+        this.unreadCounterCache = unreadCounterCache;
+        this.messageIdAllocator = messageIdAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isWriteBehind()) {
+            return;
+        }
+        if (properties.isJournalEnabled()) {
+            diskJournal = new MessageJournal(Paths.get(properties.getJournalDir()),
+                    properties.getJournalSegmentSize(),
+                    properties.getJournalFsyncPolicy(),
+                    properties.getJournalFsyncIntervalMs());
+            replay(diskJournal.recover());
+            diskJournal.start();
+        }
+        slots = new Semaphore(Math.max(1, properties.getJournalCapacity()));
+        running = true;
+        flusher = new Thread(this::flushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private boolean isWriteBehind() {
+        return properties.isWriteBehind() || properties.isJournalEnabled();
+    }
+
+    /**
+     * 保存消息；返回时 message 已带有最终 ID，返回的 Future 在消息提交到数据库后完成
+     */
+    public CompletableFuture<Message> persist(Message message) {
+        if (!isWriteBehind()) {
+            Message saved = transactionTemplate.execute(status -> {
+                Message result = messageRepository.save(message);
+                afterWrite(result);
+                return result;
+            });
+            return CompletableFuture.completedFuture(saved);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        message.setId(messageIdAllocator.nextId());
+        message.setCreatedAt(now);
+        message.setUpdatedAt(now);
+
+        PendingMessage pending = new PendingMessage(message);
+        try {
+            if (!slots.tryAcquire(properties.getAckTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("消息写入队列已满");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("消息写入被中断");
+        }
+        if (diskJournal == null) {
+            pendingQueue.add(pending);
+            return pending.future;
+        }
+        // 日志顺序与写库顺序保持一致，检查点才能单调推进
+        synchronized (pendingQueue) {
+            try {
+                pending.position = diskJournal.append(message, pending.future);
+            } catch (IOException e) {
+                slots.release();
+                throw new RuntimeException("消息写入日志失败: " + e.getMessage());
+            }
+            pendingQueue.add(pending);
+        }
+        return pending.future;
+    }
+
+    /**
+     * 等待消息落库，之后才能向发送方确认
+     */
+    public Message awaitDurable(CompletableFuture<Message> persisted) {
+        try {
+            return persisted.get(properties.getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("消息保存被中断");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("消息保存失败: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("消息保存超时");
+        }
+    }
+
+    private void afterWrite(Message message) {
+        conversationSummaryService.recordMessage(message);
+        unreadCounterCache.increment(message.getReceiverId(), message.getSenderId());
+    }
+
+    private void flushLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !pendingQueue.isEmpty()) {
+            try {
+                PendingMessage first = pendingQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 在 flushIntervalMs 内继续攒批，使并发发送方共享一次提交
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+                while (batch.size() < batchSize) {
+                    pendingQueue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = pendingQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (write(batch) && diskJournal != null) {
+                checkpoint(batch.get(batch.size() - 1).position);
+            }
+        } finally {
+            slots.release(batch.size());
+        }
+    }
+
+    /**
+     * 写入一批消息：瞬时错误（连接中断、死锁、超时等）整批重试；其他错误说明批内有写不进去的消息，
+     * 拆成两半分别写入，最终只有出错的那条消息失败，同批的其他发送方不受影响。
+     * 本地日志模式下停机时放弃重试并返回 false，已确认的消息留在日志中，下次启动时重放
+     */
+    private boolean write(List<PendingMessage> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(messages);
+                for (PendingMessage pending : batch) {
+                    pending.future.complete(pending.message);
+                }
+                return true;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    if (batch.size() == 1) {
+                        PendingMessage pending = batch.get(0);
+                        // 本地日志模式下该消息已确认，写不进数据库只能丢弃，检查点照常推进
+                        System.err.println("Dropping message " + pending.message.getId() + ": " + e.getMessage());
+                        pending.future.completeExceptionally(e);
+                        return true;
+                    }
+                    int mid = batch.size() / 2;
+                    boolean head = write(batch.subList(0, mid));
+                    return head && write(batch.subList(mid, batch.size()));
+                }
+                System.err.println("Failed to flush " + batch.size() + " messages (attempt " + attempt + "): " + e.getMessage());
+                if (diskJournal == null && attempt >= MAX_FLUSH_ATTEMPTS) {
+                    for (PendingMessage pending : batch) {
+                        pending.future.completeExceptionally(e);
+                    }
+                    return true;
+                }
+                if (diskJournal != null && !running && attempt >= MAX_FLUSH_ATTEMPTS) {
+                    return false;
+                }
+                // 本地日志模式下消息已向发送方确认，瞬时错误一直重试直到写库成功
+                sleepQuietly(Math.min(attempt * 100L, 5000L));
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void writeBatch(List<Message> messages) {
+        transactionTemplate.executeWithoutResult(status -> {
+            insertBatch(messages);
+            for (Message message : messages) {
+                afterWrite(message);
+            }
+        });
+    }
+
+    private void checkpoint(JournalPosition position) {
+        try {
+            diskJournal.checkpoint(position);
+        } catch (IOException e) {
+            // 检查点落后只会导致重启时多重放，重放会跳过已存在的消息
+            System.err.println("Failed to write message journal checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 将日志中检查点之后的记录写入数据库，跳过崩溃前已写入的消息
+     */
+    private void replay(List<Message> recovered) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        int applied = 0;
+        for (int from = 0; from < recovered.size(); from += batchSize) {
+            List<Message> chunk = recovered.subList(from, Math.min(from + batchSize, recovered.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT id FROM message WHERE id IN (" + placeholders + ")", Long.class,
+                    chunk.stream().map(Message::getId).toArray()));
+            List<PendingMessage> missing = chunk.stream().filter(m -> !existing.contains(m.getId()))
+                    .map(PendingMessage::new).toList();
+            if (!missing.isEmpty()) {
+                if (!write(missing)) {
+                    throw new IllegalStateException("Failed to replay message journal");
+                }
+                applied += missing.size();
+            }
+        }
+        if (!recovered.isEmpty()) {
+            System.err.println("Replayed message journal: " + recovered.size() + " records, " + applied + " applied");
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void insertBatch(List<Message> messages) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(messages.size() * 10);
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+            Message message = messages.get(i);
+            args.add(message.getId());
+            args.add(message.getSenderId());
+            args.add(message.getReceiverId());
+            args.add(message.getContent());
+            args.add(message.getMessageType().name());
+            args.add(message.getIsRead());
+            args.add(message.getEncryptedAESKey());
+            args.add(message.getIv());
+            args.add(Timestamp.valueOf(message.getCreatedAt()));
+            args.add(Timestamp.valueOf(message.getUpdatedAt()));
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        if (flusher == null) {
+            return;
+        }
+        // 停止接收新批次，写线程会把日志中剩余的消息全部写完后退出
+        running = false;
+        flusher.join(properties.getAckTimeoutMs() * 2);
+        if (diskJournal != null) {
+            diskJournal.close();
+        }
+    }
+
+    private static final class PendingMessage {
+        private final Message message;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+        // 本地日志中的位置，仅在开启日志时设置
+        private JournalPosition position;
+
+        private PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+}
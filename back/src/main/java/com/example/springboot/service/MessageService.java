@@ -2,36 +2,60 @@ package com.example.springboot.service;
 
 import com.example.springboot.dto.ConversationDto;
 import com.example.springboot.dto.MessageDto;
+import com.example.springboot.dto.MessagePageDto;
 import com.example.springboot.dto.SendMessageDto;
+import com.example.springboot.entity.ConversationSummary;
 import com.example.springboot.entity.Message;
 import com.example.springboot.entity.User;
+import com.example.springboot.repository.ConversationSummaryRepository;
 import com.example.springboot.repository.MessageRepository;
 import com.example.springboot.repository.UserRepository;
 import com.example.springboot.websocket.ChatWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
 public class MessageService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private MessageRepository messageRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Autowired
+    private ConversationSummaryService conversationSummaryService;
+
+    @Autowired
+    private UnreadCounterCache unreadCounterCache;
+
+    @Autowired
+    private MessagePersistenceService messagePersistenceService;
+
     @Autowired
     private ChatWebSocketHandler chatWebSocketHandler;
 
-    @Transactional
     public MessageDto sendMessage(Integer senderId, SendMessageDto sendMessageDto) {
         // Validate that receiver exists
         User receiver = userRepository.findById(sendMessageDto.getReceiverId().intValue())
@@ -49,35 +73,75 @@ public class MessageService {
         message.setCreatedAt(LocalDateTime.now());
         message.setUpdatedAt(LocalDateTime.now());
 
-        Message savedMessage = messageRepository.save(message);
+        // The message carries its final id once persist returns, even in write-behind mode
+        CompletableFuture<Message> persisted = messagePersistenceService.persist(message);
 
         // Create response DTO
-        MessageDto messageDto = new MessageDto(savedMessage);
+        MessageDto messageDto = new MessageDto(message);
         messageDto.setSenderUsername(sender.getUsername());
-        messageDto.setSenderAvatar(sender.getAvatarUrl());
+        messageDto.setSenderAvatar(AvatarService.sized(sender.getAvatarUrl(), AvatarService.LIST_SIZE));
         messageDto.setReceiverUsername(receiver.getUsername());
-        messageDto.setReceiverAvatar(receiver.getAvatarUrl());
+        messageDto.setReceiverAvatar(AvatarService.sized(receiver.getAvatarUrl(), AvatarService.LIST_SIZE));
+
+        // Acknowledge to the sender and notify the receiver only once the message is durable,
+        // so the receiver never sees a message that is later lost
+        messagePersistenceService.awaitDurable(persisted);
 
         // Send real-time notification via WebSocket
         try {
             chatWebSocketHandler.sendMessageToUser(sendMessageDto.getReceiverId(), messageDto);
         } catch (Exception e) {
-            // Log error but don't fail the transaction
+            // Log error but don't fail the send
             System.err.println("Failed to send WebSocket message: " + e.getMessage());
         }
 
         return messageDto;
     }
 
-    public List<MessageDto> getConversation(Integer userId1, Integer userId2) {
-        List<Message> messages = messageRepository.findConversation(userId1, userId2);
-        
+    /**
+     * 按游标分页获取聊天记录
+     * 两个方向 (sender_id, receiver_id, id) 各做一次索引范围扫描，再在内存中归并，
+     * 因此无论聊天记录多长，每页的代价都相同
+     * @param before 加载比该游标更早的消息（默认，从最新一页开始）
+     * @param after  加载比该游标更新的消息
+     */
+    public MessagePageDto getConversation(Integer userId1, Integer userId2,
+                                          String before, String after, Integer size) {
+        if (before != null && after != null) {
+            throw new RuntimeException("before 和 after 不能同时指定");
+        }
+        int pageSize = (size == null) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // 多取一条用于判断是否还有更多
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        boolean forward = after != null;
+        List<Message> merged = new ArrayList<>();
+        if (forward) {
+            long afterId = decodeCursor(after);
+            merged.addAll(messageRepository.findDirectionAfter(userId1, userId2, afterId, limit));
+            merged.addAll(messageRepository.findDirectionAfter(userId2, userId1, afterId, limit));
+            merged.sort(Comparator.comparing(Message::getId));
+        } else {
+            long beforeId = (before == null) ? Long.MAX_VALUE : decodeCursor(before);
+            merged.addAll(messageRepository.findDirectionBefore(userId1, userId2, beforeId, limit));
+            merged.addAll(messageRepository.findDirectionBefore(userId2, userId1, beforeId, limit));
+            merged.sort(Comparator.comparing(Message::getId).reversed());
+        }
+
+        boolean hasMore = merged.size() > pageSize;
+        List<Message> page = new ArrayList<>(merged.subList(0, Math.min(pageSize, merged.size())));
+        // 游标指向本页中离起点最远的一条消息
+        String nextCursor = page.isEmpty() ? null : encodeCursor(page.get(page.size() - 1).getId());
+        if (!forward) {
+            Collections.reverse(page);
+        }
+
         // Get user info for message DTOs
         Map<Integer, User> userMap = new HashMap<>();
         userMap.put(userId1, userRepository.findById(userId1).orElse(null));
         userMap.put(userId2, userRepository.findById(userId2).orElse(null));
 
-        return messages.stream().map(message -> {
+        List<MessageDto> messages = page.stream().map(message -> {
             MessageDto dto = new MessageDto(message);
             
             User sender = userMap.get(message.getSenderId());
@@ -85,39 +149,55 @@ public class MessageService {
             
             if (sender != null) {
                 dto.setSenderUsername(sender.getUsername());
-                dto.setSenderAvatar(sender.getAvatarUrl());
+                dto.setSenderAvatar(AvatarService.sized(sender.getAvatarUrl(), AvatarService.LIST_SIZE));
             }
             if (receiver != null) {
                 dto.setReceiverUsername(receiver.getUsername());
-                dto.setReceiverAvatar(receiver.getAvatarUrl());
+                dto.setReceiverAvatar(AvatarService.sized(receiver.getAvatarUrl(), AvatarService.LIST_SIZE));
             }
             
             return dto;
         }).collect(Collectors.toList());
+
+        return new MessagePageDto(messages, nextCursor, hasMore);
     }
 
+    private static String encodeCursor(Long messageId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("m:" + messageId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith("m:")) {
+                throw new IllegalArgumentException(raw);
+            }
+            return Long.parseLong(raw.substring(2));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("无效的游标");
+        }
+    }
+
+    /**
+     * 获取对话列表
+     * 直接读取写入时维护的 conversation_summary，按 (owner_id, last_message_time) 索引做一次范围扫描
+     */
     public List<ConversationDto> getConversations(Integer userId) {
-        List<Message> lastMessages = messageRepository.findLastMessagesForUser(userId);
         List<ConversationDto> conversations = new ArrayList<>();
+        for (Object[] row : conversationSummaryRepository.findByOwnerWithPeer(userId)) {
+            ConversationSummary summary = (ConversationSummary) row[0];
+            User friend = (User) row[1];
 
-        for (Message message : lastMessages) {
-            Integer friendId = message.getSenderId().equals(userId) ? 
-                           message.getReceiverId() : message.getSenderId();
-            
-            User friend = userRepository.findById(friendId).orElse(null);
-            if (friend == null) continue;
-
-            Long unreadCount = messageRepository.countUnreadMessages(userId, friendId);
-            
             ConversationDto conversation = new ConversationDto();
-            conversation.setFriendId(friendId);
+            conversation.setFriendId(friend.getId());
             conversation.setFriendUsername(friend.getUsername());
             conversation.setFriendDisplayName(friend.getDisplayName());
-            conversation.setFriendAvatar(friend.getAvatarUrl());
-            conversation.setLastMessage(message.getContent());
-            conversation.setUnreadCount(unreadCount);
-            conversation.setLastMessageTime(message.getCreatedAt());
-            conversation.setIsOnline(chatWebSocketHandler.isUserOnline(friendId));
+            conversation.setFriendAvatar(AvatarService.sized(friend.getAvatarUrl(), AvatarService.LIST_SIZE));
+            conversation.setLastMessage(summary.getLastMessagePreview());
+            conversation.setUnreadCount(summary.getUnreadCount().longValue());
+            conversation.setLastMessageTime(summary.getLastMessageTime());
+            conversation.setIsOnline(chatWebSocketHandler.isUserOnline(friend.getId()));
 
             conversations.add(conversation);
         }
@@ -128,10 +208,12 @@ public class MessageService {
     @Transactional
     public void markMessagesAsRead(Integer receiverId, Integer senderId) {
         messageRepository.markMessagesAsRead(receiverId, senderId);
+        conversationSummaryService.markRead(receiverId, senderId);
+        unreadCounterCache.reset(receiverId, senderId);
     }
 
     public Long getUnreadCount(Integer receiverId, Integer senderId) {
-        return messageRepository.countUnreadMessages(receiverId, senderId);
+        return unreadCounterCache.get(receiverId, senderId);
     }
 
     public Long getMessageCountByDate(Integer userId, String date) {
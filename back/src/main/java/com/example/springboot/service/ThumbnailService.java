@@ -0,0 +1,290 @@
+package com.example.springboot.service;
+
+import com.example.springboot.config.FileProperties;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 图片缩略图生成与磁盘缓存
+ * 缩略图按源文件指纹和尺寸生成内容寻址的路径（两级扇出目录），首次请求时生成；
+ * 缓存总大小超过上限时按最近最少使用淘汰；调用方持有的缩略图在 release 之前不会被淘汰
+ */
+@Service
+public class ThumbnailService {
+
+    // 支持的缩略图边长，请求尺寸向上取最近的一档
+    public static final int[] SIZES = {64, 128, 256};
+
+    private final FileProperties fileProperties;
+
+    private Path cacheRoot;
+    // 缓存索引：相对路径 -> 条目，按访问顺序排列
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // 同一缩略图只由一个线程生成
+    private final Map<String, Object> generating = new ConcurrentHashMap<>();
+
+    public ThumbnailService(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        cacheRoot = Paths.get(fileProperties.getThumbnailDir());
+        Files.createDirectories(cacheRoot);
+        // 按修改时间从旧到新载入已有缓存，作为初始的访问顺序
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                    .forEach(existing::add);
+        }
+        existing.sort(Comparator.comparingLong(this::lastModified));
+        synchronized (index) {
+            for (Path file : existing) {
+                long size = file.toFile().length();
+                index.put(cacheRoot.relativize(file).toString(), new Entry(size));
+                totalBytes += size;
+            }
+            evict();
+        }
+    }
+
+    public static boolean isSupported(String filename) {
+        String ext = extension(filename);
+        return ext.equals("png") || ext.equals("jpg") || ext.equals("jpeg")
+                || ext.equals("gif") || ext.equals("bmp");
+    }
+
+    public static int normalizeSize(int requested) {
+        for (int size : SIZES) {
+            if (requested <= size) {
+                return size;
+            }
+        }
+        return SIZES[SIZES.length - 1];
+    }
+
+    /**
+     * 返回缩略图路径，缓存不存在时生成
+     * 返回的缩略图被标记为使用中，响应写完后必须调用 {@link #release(Path)}
+     * @param fingerprint 能唯一标识源文件内容的字符串
+     */
+    public Path getThumbnail(Path source, String fingerprint, String filename, int size) throws IOException {
+        String format = outputFormat(filename);
+        String key = hash(fingerprint + "|" + size);
+        String relative = key.substring(0, 2) + "/" + key + "-" + size + "." + format;
+        Path target = cacheRoot.resolve(relative);
+
+        boolean acquired = acquire(relative);
+        if (acquired && Files.exists(target)) {
+            return target;
+        }
+        // 索引中有条目但文件已被外部删除时，保持使用中标记直到重新生成并登记
+        Object lock = generating.computeIfAbsent(relative, k -> new Object());
+        try {
+            synchronized (lock) {
+                if (!Files.exists(target)) {
+                    render(source, target, format, size);
+                }
+                record(relative, target, acquired);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (acquired) {
+                release(target);
+            }
+            throw e;
+        } finally {
+            generating.remove(relative, lock);
+        }
+        return target;
+    }
+
+    /**
+     * 释放 getThumbnail 返回的缩略图，此前因使用中而跳过的淘汰在这里补做
+     */
+    public void release(Path thumbnail) {
+        String relative = cacheRoot.relativize(thumbnail).toString();
+        synchronized (index) {
+            Entry entry = index.get(relative);
+            if (entry != null && entry.inUse > 0) {
+                entry.inUse--;
+            }
+            evict();
+        }
+    }
+
+    private void render(Path source, Path target, String format, int size) throws IOException {
+        BufferedImage image = readSubsampled(source.toFile(), size);
+        if (image == null) {
+            throw new IOException("Unsupported image: " + source.getFileName());
+        }
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int type = format.equals("png") ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage thumbnail = new BufferedImage(width, height, type);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        if (!ImageIO.write(thumbnail, format, tmp.toFile())) {
+            Files.deleteIfExists(tmp);
+            throw new IOException("No image writer for " + format);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 按目标尺寸做源图采样读取，大图不会以原始分辨率解码进内存
+     */
+    static BufferedImage readSubsampled(File source, int size) throws IOException {
+        return readSubsampled(ImageIO.createImageInputStream(source), size);
+    }
+
+    static BufferedImage readSubsampled(InputStream source, int size) throws IOException {
+        return readSubsampled(ImageIO.createImageInputStream(source), size);
+    }
+
+    private static BufferedImage readSubsampled(ImageInputStream source, int size) throws IOException {
+        try (ImageInputStream in = source) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longest / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // 命中时更新访问顺序并标记为使用中
+    private boolean acquire(String relative) {
+        synchronized (index) {
+            Entry entry = index.get(relative);
+            if (entry == null) {
+                return false;
+            }
+            entry.inUse++;
+            return true;
+        }
+    }
+
+    // 大小在索引锁内读取，登记与标记使用中是同一步，淘汰不会删除刚生成的文件
+    private void record(String relative, Path target, boolean acquired) throws IOException {
+        synchronized (index) {
+            long size = Files.size(target);
+            Entry entry = index.get(relative);
+            if (entry == null) {
+                entry = new Entry(size);
+                index.put(relative, entry);
+                totalBytes += size;
+            } else {
+                totalBytes += size - entry.size;
+                entry.size = size;
+            }
+            if (!acquired) {
+                entry.inUse++;
+            }
+            evict();
+        }
+    }
+
+    // 跳过使用中的条目，它们在 release 时再参与淘汰
+    private void evict() {
+        long maxBytes = fileProperties.getThumbnailCacheMaxBytes();
+        Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue().inUse > 0) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(cacheRoot.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Failed to evict thumbnail " + eldest.getKey() + ": " + e.getMessage());
+            }
+            totalBytes -= eldest.getValue().size;
+            it.remove();
+        }
+    }
+
+    private static final class Entry {
+        long size;
+        // 正在使用该缩略图的请求数
+        int inUse;
+
+        Entry(long size) {
+            this.size = size;
+        }
+    }
+
+    private long lastModified(Path file) {
+        return file.toFile().lastModified();
+    }
+
+    private static String outputFormat(String filename) {
+        String ext = extension(filename);
+        // 可能带透明通道的格式输出 png，其余输出 jpg
+        return ext.equals("png") || ext.equals("gif") ? "png" : "jpg";
+    }
+
+    private static String extension(String filename) {
+        int lastDot = filename.lastIndexOf('.');
+        return (lastDot == -1) ? "" : filename.substring(lastDot + 1).toLowerCase();
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.AuthPrincipal;
+import com.example.springboot.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * token 校验结果缓存，键为 token 原文
+ * 首次出现的 token 做一次签名校验和解析，之后直到过期都直接返回缓存的主体
+ */
+@Service
+public class TokenVerificationCache {
+
+    // 超过该条目数时先清理过期项，仍然超出则整体清空
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final Map<String, AuthPrincipal> principals = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 校验 token 并返回主体；签名错误、过期或格式错误时返回 null
+     */
+    public AuthPrincipal verify(String token) {
+        long now = System.currentTimeMillis();
+        AuthPrincipal cached = principals.get(token);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            principals.remove(token, cached);
+        }
+        misses.incrementAndGet();
+
+        AuthPrincipal principal;
+        try {
+            principal = toPrincipal(JwtUtil.parseClaims(token));
+        } catch (Exception e) {
+            return null;
+        }
+        if (principal.isExpired(now)) {
+            return null;
+        }
+        if (principals.size() >= MAX_ENTRIES) {
+            evictExpired();
+            if (principals.size() >= MAX_ENTRIES) {
+                principals.clear();
+            }
+        }
+        principals.put(token, principal);
+        return principal;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        principals.values().removeIf(principal -> principal.isExpired(now));
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", principals.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    private static AuthPrincipal toPrincipal(Claims claims) {
+        Object userId = claims.get("userId");
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        return new AuthPrincipal(userId != null ? Integer.valueOf(userId.toString()) : null,
+                claims.getSubject(), expiresAt);
+    }
+}
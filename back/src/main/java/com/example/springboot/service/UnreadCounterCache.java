@@ -0,0 +1,97 @@
+package com.example.springboot.service;
+
+import com.example.springboot.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 未读消息数的进程内缓存，键为 (receiverId, senderId) 打包成的 long
+ * 未命中时从数据库加载，发送消息时加一、标记已读时清零（均在事务提交后生效），并定期与数据库对账
+ */
+@Service
+public class UnreadCounterCache {
+
+    // 超过该条目数时对账直接清空缓存，之后按需重新加载
+    private static final int MAX_ENTRIES = 100_000;
+
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    public long get(Integer receiverId, Integer senderId) {
+        return counters.computeIfAbsent(key(receiverId, senderId),
+                k -> new AtomicLong(messageRepository.countUnreadMessages(receiverId, senderId))).get();
+    }
+
+    /**
+     * 新消息提交后加一；未加载的条目不处理，下次读取时会从数据库得到包含该消息的值
+     */
+    public void increment(Integer receiverId, Integer senderId) {
+        long key = key(receiverId, senderId);
+        afterCommit(() -> counters.computeIfPresent(key, (k, counter) -> {
+            counter.incrementAndGet();
+            return counter;
+        }));
+    }
+
+    public void reset(Integer receiverId, Integer senderId) {
+        long key = key(receiverId, senderId);
+        afterCommit(() -> counters.computeIfPresent(key, (k, counter) -> {
+            counter.set(0);
+            return counter;
+        }));
+    }
+
+    /**
+     * 按接收者分组，每个接收者一次分组计数查询，修正缓存中可能出现的偏差。
+     * 查询前记下各计数器的值，查询期间被加一或清零的计数器不覆盖，留到下次对账
+     */
+    @Scheduled(fixedDelayString = "${message.unread-reconcile-ms:60000}")
+    public void reconcile() {
+        if (counters.size() > MAX_ENTRIES) {
+            counters.clear();
+            return;
+        }
+        // 接收者 ID -> (发送者 ID -> 计数器)，一次遍历完成分组
+        Map<Integer, Map<Integer, AtomicLong>> byReceiver = new HashMap<>();
+        counters.forEach((key, counter) -> byReceiver
+                .computeIfAbsent((int) (key >>> 32), k -> new HashMap<>())
+                .put((int) key.longValue(), counter));
+        byReceiver.forEach((receiverId, senders) -> {
+            Map<Integer, Long> snapshot = new HashMap<>();
+            senders.forEach((senderId, counter) -> snapshot.put(senderId, counter.get()));
+            Map<Integer, Long> actual = new HashMap<>();
+            for (Object[] row : messageRepository.countUnreadMessagesGroupedBySender(receiverId)) {
+                actual.put((Integer) row[0], (Long) row[1]);
+            }
+            senders.forEach((senderId, counter) ->
+                    counter.compareAndSet(snapshot.get(senderId), actual.getOrDefault(senderId, 0L)));
+        });
+    }
+
+    private static long key(Integer receiverId, Integer senderId) {
+        return ((long) receiverId << 32) | (senderId & 0xffffffffL);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.example.springboot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 一次分片上传的会话状态：所有者、预期分片数、已接收分片位图、已接收字节数
+ * 两种模式：直写模式（预先声明总大小和分片大小，分片写入预分配的目标文件）与分片文件模式（每个分片一个 .part 文件）。
+ * 会话目录中的参数文件与位图即为磁盘检查点，位图按字节原地更新。
+ * 整个文件的 SHA-256 按分片序号顺序增量累积：按序到达的分片在写入时顺带计算，
+ * 乱序到达的分片在前面的空缺补齐后从磁盘读取补算；摘要状态不落盘，重启后从头补算
+ */
+final class UploadSession {
+
+    static final String META_FILE = "upload.properties";
+    static final String BITMAP_FILE = "received.bitmap";
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    private final String fileId;
+    private final Path dir;
+    // 没有记录所有者（为 null）的会话任何人都不能访问，启动时直接清理
+    private final Integer ownerId;
+    // 直写模式下的声明值；分片文件模式下 totalSize 为 -1，chunkSize 为 0
+    private final long totalSize;
+    private final int chunkSize;
+    // 预期分片数，未知时为 -1
+    private final int expectedChunks;
+    // 直写模式的目标文件，分片文件模式为 null
+    private final Path dataFile;
+    private final BitSet received;
+    private long bytesReceived;
+    private volatile long lastActivity;
+    // 合并进行中的会话不会被清理，也不再接受分片写入
+    private volatile boolean merging;
+    // 正在写入的分片数，由 this 保护
+    private int activeWrites;
+
+    private final Object digestLock = new Object();
+    // 序号小于 digestedChunks 的分片已计入 fileDigest
+    private MessageDigest fileDigest = sha256();
+    private int digestedChunks;
+    // 已计入的分片被重写时摘要重置，generation 用于丢弃重置前取出的副本
+    private int digestGeneration;
+
+    private UploadSession(String fileId, Path dir, Integer ownerId, long totalSize, int chunkSize,
+                          int expectedChunks, Path dataFile, BitSet received) {
+        this.fileId = fileId;
+        this.dir = dir;
+        this.ownerId = ownerId;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.expectedChunks = expectedChunks;
+        this.dataFile = dataFile;
+        this.received = received;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(META_FILE));
+    }
+
+    static UploadSession createDirect(Path dir, String fileId, Integer ownerId, long totalSize, int chunkSize,
+                                      Path dataFile) throws IOException {
+        int chunkCount = (int) ((totalSize + chunkSize - 1) / chunkSize);
+        UploadSession session = new UploadSession(fileId, dir, ownerId, totalSize, chunkSize, chunkCount,
+                dataFile, new BitSet());
+        session.writeCheckpoint();
+        return session;
+    }
+
+    static UploadSession createChunked(Path dir, String fileId, Integer ownerId, int expectedChunks) throws IOException {
+        UploadSession session = new UploadSession(fileId, dir, ownerId, -1, 0, expectedChunks, null, new BitSet());
+        session.writeCheckpoint();
+        return session;
+    }
+
+    /**
+     * 从会话目录恢复；已接收字节数由位图和分片长度重新计算
+     */
+    static UploadSession load(Path dir) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve(META_FILE))) {
+            meta.load(in);
+        }
+        String owner = meta.getProperty("ownerId", "");
+        String data = meta.getProperty("dataFile", "");
+        Path bitmap = dir.resolve(BITMAP_FILE);
+        UploadSession session = new UploadSession(
+                dir.getFileName().toString(),
+                dir,
+                owner.isEmpty() ? null : Integer.valueOf(owner),
+                Long.parseLong(meta.getProperty("totalSize", "-1")),
+                Integer.parseInt(meta.getProperty("chunkSize", "0")),
+                Integer.parseInt(meta.getProperty("expectedChunks", "-1")),
+                data.isEmpty() ? null : Paths.get(data),
+                Files.exists(bitmap) ? BitSet.valueOf(Files.readAllBytes(bitmap)) : new BitSet());
+        for (int i = session.received.nextSetBit(0); i >= 0; i = session.received.nextSetBit(i + 1)) {
+            if (session.isDirect()) {
+                session.bytesReceived += session.expectedLength(i);
+            } else {
+                Path part = session.partPath(i);
+                if (Files.exists(part)) {
+                    session.bytesReceived += Files.size(part);
+                } else {
+                    session.received.clear(i);
+                }
+            }
+        }
+        if (Files.exists(bitmap)) {
+            session.lastActivity = Files.getLastModifiedTime(bitmap).toMillis();
+        }
+        return session;
+    }
+
+    private void writeCheckpoint() throws IOException {
+        Files.createDirectories(dir);
+        Files.write(dir.resolve(BITMAP_FILE), bitmapBytes());
+        Properties meta = new Properties();
+        meta.setProperty("ownerId", ownerId != null ? String.valueOf(ownerId) : "");
+        meta.setProperty("totalSize", String.valueOf(totalSize));
+        meta.setProperty("chunkSize", String.valueOf(chunkSize));
+        meta.setProperty("expectedChunks", String.valueOf(expectedChunks));
+        meta.setProperty("dataFile", dataFile != null ? dataFile.toAbsolutePath().toString() : "");
+        // 参数文件最后写入，它存在即表示会话已完整创建
+        Path tmp = dir.resolve(META_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            meta.store(out, null);
+        }
+        Files.move(tmp, dir.resolve(META_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] bitmapBytes() {
+        int chunks = Math.max(expectedChunks, received.length());
+        byte[] bytes = new byte[(chunks + 7) / 8];
+        byte[] set = received.toByteArray();
+        System.arraycopy(set, 0, bytes, 0, set.length);
+        return bytes;
+    }
+
+    String getFileId() {
+        return fileId;
+    }
+
+    Path getDir() {
+        return dir;
+    }
+
+    Integer getOwnerId() {
+        return ownerId;
+    }
+
+    boolean isOwnedBy(Integer userId) {
+        return ownerId != null && ownerId.equals(userId);
+    }
+
+    boolean isDirect() {
+        return dataFile != null;
+    }
+
+    long getTotalSize() {
+        return totalSize;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int getExpectedChunks() {
+        return expectedChunks;
+    }
+
+    Path getDataFile() {
+        return dataFile;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    Path partPath(int chunkIndex) {
+        return dir.resolve(chunkIndex + ".part");
+    }
+
+    long offset(int chunkIndex) {
+        return (long) chunkIndex * chunkSize;
+    }
+
+    void checkIndex(int chunkIndex) {
+        if (chunkIndex < 0 || (expectedChunks >= 0 && chunkIndex >= expectedChunks)) {
+            throw new IllegalArgumentException("Chunk index out of range: " + chunkIndex);
+        }
+    }
+
+    int expectedLength(int chunkIndex) {
+        checkIndex(chunkIndex);
+        return (int) Math.min(chunkSize, totalSize - offset(chunkIndex));
+    }
+
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    boolean isMerging() {
+        return merging;
+    }
+
+    void setMerging(boolean merging) {
+        this.merging = merging;
+        touch();
+    }
+
+    /**
+     * 开始写入一个分片；合并开始后不再接受写入，与 startMerging 在同一把锁下判断
+     */
+    synchronized void beginWrite() {
+        if (merging) {
+            throw new IllegalStateException("Upload is being merged");
+        }
+        activeWrites++;
+        touch();
+    }
+
+    synchronized void endWrite() {
+        activeWrites--;
+    }
+
+    /**
+     * 进入合并状态；已在合并、仍有分片正在写入或分片未到齐时抛出 IllegalStateException
+     */
+    synchronized void startMerging() {
+        if (merging) {
+            throw new IllegalStateException("Upload is being merged");
+        }
+        if (activeWrites > 0) {
+            throw new IllegalStateException("Chunk upload still in progress");
+        }
+        if (!isComplete()) {
+            throw new IllegalStateException("Upload incomplete: " + received.cardinality()
+                    + "/" + expectedChunks + " chunks received");
+        }
+        setMerging(true);
+    }
+
+    /**
+     * 记录分片已接收，只改写位图中该分片所在的一个字节
+     * @param previousLength 分片已接收过时（重传）此前的长度
+     * @return 已接收字节数的变化量
+     */
+    synchronized long markReceived(int chunkIndex, long length, long previousLength) throws IOException {
+        touch();
+        if (received.get(chunkIndex)) {
+            bytesReceived += length - previousLength;
+            return length - previousLength;
+        }
+        bytesReceived += length;
+        received.set(chunkIndex);
+        writeBitmapByte(chunkIndex);
+        return length;
+    }
+
+    private void writeBitmapByte(int chunkIndex) throws IOException {
+        int base = chunkIndex & ~7;
+        byte b = 0;
+        for (int bit = 0; bit < 8; bit++) {
+            if (received.get(base + bit)) {
+                b |= (byte) (1 << bit);
+            }
+        }
+        try (FileChannel bitmap = FileChannel.open(dir.resolve(BITMAP_FILE), StandardOpenOption.WRITE)) {
+            bitmap.write(ByteBuffer.wrap(new byte[]{b}), chunkIndex / 8);
+        }
+    }
+
+    /**
+     * 清除分片的接收标记（已接收的分片被损坏的数据覆盖时）
+     */
+    synchronized long clearReceived(int chunkIndex, long length) throws IOException {
+        if (!received.get(chunkIndex)) {
+            return 0;
+        }
+        received.clear(chunkIndex);
+        bytesReceived -= length;
+        writeBitmapByte(chunkIndex);
+        return -length;
+    }
+
+    synchronized boolean isReceived(int chunkIndex) {
+        return received.get(chunkIndex);
+    }
+
+    synchronized List<Integer> receivedChunks() {
+        List<Integer> chunks = new ArrayList<>(received.cardinality());
+        for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+            chunks.add(i);
+        }
+        return chunks;
+    }
+
+    synchronized int receivedCount() {
+        return received.cardinality();
+    }
+
+    synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * 预期分片数未知时（旧版本客户端）无法判断，视为完整
+     */
+    synchronized boolean isComplete() {
+        return expectedChunks < 0 || received.cardinality() == expectedChunks;
+    }
+
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("fileId", fileId);
+        summary.put("mode", isDirect() ? "DIRECT" : "CHUNK_FILES");
+        summary.put("expectedChunks", expectedChunks);
+        summary.put("receivedChunks", received.cardinality());
+        summary.put("bytesReceived", bytesReceived);
+        summary.put("totalSize", totalSize);
+        summary.put("complete", isComplete());
+        summary.put("lastActivity", lastActivity);
+        return summary;
+    }
+
+    /**
+     * 分片恰好是下一个待计入摘要的分片时，返回当前摘要状态的副本，供写入时顺带计算；否则返回 null
+     */
+    StreamingDigest digestFor(int chunkIndex) {
+        synchronized (digestLock) {
+            if (chunkIndex != digestedChunks) {
+                return null;
+            }
+            try {
+                return new StreamingDigest(chunkIndex, digestGeneration, (MessageDigest) fileDigest.clone());
+            } catch (CloneNotSupportedException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 分片写入并标记接收后提交写入时计算的摘要，再补算之后已到达的分片
+     */
+    void commitDigest(StreamingDigest streaming) throws IOException {
+        synchronized (digestLock) {
+            if (streaming.chunkIndex == digestedChunks && streaming.generation == digestGeneration) {
+                fileDigest = streaming.digest;
+                digestedChunks++;
+            }
+            advanceDigest();
+        }
+    }
+
+    /**
+     * 已接收的分片被重写时调用：若该分片已计入摘要则摘要作废，从头补算
+     */
+    void invalidateDigest(int chunkIndex) {
+        synchronized (digestLock) {
+            if (chunkIndex < digestedChunks) {
+                fileDigest = sha256();
+                digestedChunks = 0;
+                digestGeneration++;
+            }
+        }
+    }
+
+    /**
+     * 补算剩余分片后返回整个文件的 SHA-256；按序上传时无需再读取数据
+     */
+    String finishDigest() throws IOException {
+        synchronized (digestLock) {
+            advanceDigest();
+            int end;
+            synchronized (this) {
+                end = received.length();
+            }
+            if (digestedChunks != end) {
+                throw new IllegalStateException("Upload incomplete: chunk " + digestedChunks + " missing");
+            }
+            return HexFormat.of().formatHex(fileDigest.digest());
+        }
+    }
+
+    // 调用方持有 digestLock
+    private void advanceDigest() throws IOException {
+        ByteBuffer buffer = null;
+        while (isReceived(digestedChunks)) {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+            }
+            Path source = isDirect() ? dataFile : partPath(digestedChunks);
+            long position = isDirect() ? offset(digestedChunks) : 0;
+            long end = isDirect() ? position + expectedLength(digestedChunks) : Long.MAX_VALUE;
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                while (position < end) {
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int n = channel.read(buffer, position);
+                    if (n == -1) {
+                        break;
+                    }
+                    position += n;
+                    buffer.flip();
+                    fileDigest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            digestedChunks++;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 写入某个分片时使用的摘要副本
+     */
+    static final class StreamingDigest {
+        private final int chunkIndex;
+        private final int generation;
+        private final MessageDigest digest;
+
+        private StreamingDigest(int chunkIndex, int generation, MessageDigest digest) {
+            this.chunkIndex = chunkIndex;
+            this.generation = generation;
+            this.digest = digest;
+        }
+
+        MessageDigest getDigest() {
+            return digest;
+        }
+    }
+}
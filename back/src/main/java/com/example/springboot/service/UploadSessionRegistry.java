@@ -0,0 +1,181 @@
+package com.example.springboot.service;
+
+import com.example.springboot.config.UploadProperties;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 分片上传会话登记表
+ * 启动时从上传目录中的会话检查点恢复会话（没有所有者的会话和旧版本的分片目录直接删除），之后查询上传进度只访问内存。
+ * 同时按用户累计未完成上传已接收的字节数用于配额检查，并定期清理长时间无活动的会话
+ */
+@Service
+public class UploadSessionRegistry {
+
+    private final Path root;
+    private final UploadProperties uploadProperties;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    // 用户 ID -> 未完成上传已接收的字节数
+    private final Map<Integer, Long> userBytes = new ConcurrentHashMap<>();
+
+    public UploadSessionRegistry(@Value("${file.upload-dir}") String uploadDir, UploadProperties uploadProperties) {
+        this.root = Paths.get(uploadDir);
+        this.uploadProperties = uploadProperties;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                if (!Files.isDirectory(dir)) {
+                    continue;
+                }
+                try {
+                    if (UploadSession.exists(dir)) {
+                        UploadSession session = UploadSession.load(dir);
+                        if (session.getOwnerId() == null) {
+                            discard(dir, "has no owner");
+                        } else if (session.isDirect() && !Files.exists(session.getDataFile())) {
+                            // 目标文件已在合并时改名交给 blob 存储（合并后、清理会话前崩溃），会话不能再写入
+                            discard(dir, "data file is missing");
+                        } else {
+                            register(session);
+                        }
+                    } else if (hasParts(dir)) {
+                        // 旧版本的分片目录没有记录所有者，无法确认归属，不恢复
+                        discard(dir, "is a legacy chunk directory without owner");
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Failed to restore upload session " + dir.getFileName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public long getUserBytes(Integer userId) {
+        return userBytes.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * 再接收 incomingBytes 字节后是否仍在用户配额内；并发上传的分片可能使用量略超配额
+     */
+    public boolean withinQuota(Integer userId, long incomingBytes) {
+        long quota = uploadProperties.getUserQuotaBytes();
+        return quota <= 0 || getUserBytes(userId) + incomingBytes <= quota;
+    }
+
+    UploadSession get(String fileId) {
+        return sessions.get(fileId);
+    }
+
+    Collection<UploadSession> all() {
+        return sessions.values();
+    }
+
+    synchronized UploadSession createDirect(String fileId, Integer ownerId, long totalSize, int chunkSize,
+                                            Path dataFile) throws IOException {
+        if (sessions.containsKey(fileId)) {
+            throw new IllegalArgumentException("Upload already exists: " + fileId);
+        }
+        return register(UploadSession.createDirect(root.resolve(fileId), fileId, ownerId, totalSize, chunkSize, dataFile));
+    }
+
+    /**
+     * 分片文件模式的会话在收到第一个分片时创建
+     */
+    synchronized UploadSession getOrCreateChunked(String fileId, Integer ownerId, int expectedChunks) throws IOException {
+        UploadSession session = sessions.get(fileId);
+        if (session != null) {
+            return session;
+        }
+        return register(UploadSession.createChunked(root.resolve(fileId), fileId, ownerId, expectedChunks));
+    }
+
+    void markReceived(UploadSession session, int chunkIndex, long length, long previousLength) throws IOException {
+        addBytes(session.getOwnerId(), session.markReceived(chunkIndex, length, previousLength));
+    }
+
+    void clearReceived(UploadSession session, int chunkIndex, long length) throws IOException {
+        addBytes(session.getOwnerId(), session.clearReceived(chunkIndex, length));
+    }
+
+    /**
+     * 移除会话并删除会话目录（检查点与 .part 文件）
+     */
+    void remove(UploadSession session) {
+        if (sessions.remove(session.getFileId(), session)) {
+            addBytes(session.getOwnerId(), -session.getBytesReceived());
+        }
+        try {
+            FileSystemUtils.deleteRecursively(session.getDir());
+        } catch (IOException e) {
+            System.err.println("Failed to delete upload directory " + session.getDir() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 清理超过 TTL 没有活动的会话，直写模式预分配的目标文件一并删除
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void reapAbandoned() {
+        long cutoff = System.currentTimeMillis() - uploadProperties.getSessionTtlMs();
+        for (UploadSession session : sessions.values()) {
+            if (session.isMerging() || session.getLastActivity() >= cutoff) {
+                continue;
+            }
+            remove(session);
+            if (session.isDirect()) {
+                try {
+                    Files.deleteIfExists(session.getDataFile());
+                } catch (IOException e) {
+                    System.err.println("Failed to delete upload data " + session.getDataFile() + ": " + e.getMessage());
+                }
+            }
+            System.err.println("Reaped abandoned upload " + session.getFileId() + " (" + session.getBytesReceived() + " bytes)");
+        }
+    }
+
+    private UploadSession register(UploadSession session) {
+        sessions.put(session.getFileId(), session);
+        addBytes(session.getOwnerId(), session.getBytesReceived());
+        return session;
+    }
+
+    private void addBytes(Integer ownerId, long delta) {
+        if (ownerId == null || delta == 0) {
+            return;
+        }
+        userBytes.compute(ownerId, (k, v) -> {
+            long total = (v != null ? v : 0) + delta;
+            return total == 0 ? null : total;
+        });
+    }
+
+    private static void discard(Path dir, String reason) throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+        System.err.println("Discarded upload session " + dir.getFileName() + ": " + reason);
+    }
+
+    private static boolean hasParts(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.anyMatch(p -> p.getFileName().toString().endsWith(".part"));
+        }
+    }
+}
@@ -25,6 +25,14 @@ public class JwtUtil {
                 .compact();
     }
 
+    // 校验签名并解析 token 的全部声明
+    public static Claims parseClaims(String token) {
+        return Jwts.parser()
+                .setSigningKey(SECRET_KEY)
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
     // 解析 token 获取用户名
     public static String getUsernameFromToken(String token) {
         return Jwts.parser()
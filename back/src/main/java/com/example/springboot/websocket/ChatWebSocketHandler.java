@@ -1,8 +1,10 @@
 package com.example.springboot.websocket;
 
 import com.example.springboot.dto.MessageDto;
+import com.example.springboot.dto.WsEnvelope;
+import com.example.springboot.service.ContactIndexService;
 import com.example.springboot.utils.JwtUtil;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
@@ -10,9 +12,12 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class ChatWebSocketHandler extends TextWebSocketHandler {
@@ -21,27 +26,47 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     private static final Map<Integer, Set<WebSocketSession>> userSessions = new ConcurrentHashMap<>();
     // Keep track of session to userId mapping for quick lookup
     private static final Map<WebSocketSession, Integer> sessionToUser = new ConcurrentHashMap<>();
-    
+
+    // Presence changes within this window are coalesced into a single notification
+    private static final long PRESENCE_DEBOUNCE_MS = 2000;
+    // Users whose USER_ONLINE has been announced to their contacts
+    private final Set<Integer> announcedOnline = ConcurrentHashMap.newKeySet();
+    // Pending debounced presence flushes per user
+    private final Map<Integer, ScheduledFuture<?>> pendingPresence = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService presenceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "presence-debounce");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private FrameEncoder frameEncoder;
+
     @Autowired
-    private ObjectMapper objectMapper;
+    private OutboundMessageDispatcher outboundDispatcher;
+
+    @Autowired
+    private ContactIndexService contactIndexService;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         Integer userId = getUserIdFromToken(session);
         if (userId != null) {
+            outboundDispatcher.register(session);
             // Add session to user's session set
             userSessions.computeIfAbsent(userId, k -> new CopyOnWriteArraySet<>()).add(session);
             sessionToUser.put(session, userId);
             
-            // Notify other users that this user is online (only if this is their first session)
+            // Notify contacts that this user is online (only if this is their first session)
             if (userSessions.get(userId).size() == 1) {
-                broadcastUserStatus(userId, true);
+                schedulePresenceUpdate(userId);
             }
         }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        outboundDispatcher.unregister(session);
         Integer userId = sessionToUser.remove(session);
         if (userId != null) {
             Set<WebSocketSession> sessions = userSessions.get(userId);
@@ -51,7 +76,7 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 // Only mark user as offline if they have no more active sessions
                 if (sessions.isEmpty()) {
                     userSessions.remove(userId);
-                    broadcastUserStatus(userId, false);
+                    schedulePresenceUpdate(userId);
                 }
             }
         }
@@ -63,8 +88,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         
         // Handle heartbeats
         if ("ping".equals(payload)) {
-            // Respond with pong immediately
-            session.sendMessage(new TextMessage("pong"));
+            // Respond with pong through the outbound queue to keep writes serialized
+            outboundDispatcher.send(session, new TextMessage("pong"));
             return;
         }
         
@@ -80,49 +105,22 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void sendMessageToUser(Integer userId, MessageDto messageDto) throws Exception {
         Set<WebSocketSession> sessions = userSessions.get(userId);
         if (sessions != null && !sessions.isEmpty()) {
-            Map<String, Object> wsMessage = new HashMap<>();
-            wsMessage.put("type", "NEW_MESSAGE");
-            wsMessage.put("data", messageDto);
-            
-            String jsonMessage = objectMapper.writeValueAsString(wsMessage);
-            
-            // Send to all active sessions for this user
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    try {
-                        session.sendMessage(new TextMessage(jsonMessage));
-                    } catch (Exception e) {
-                        System.err.println("Failed to send message to session " + session.getId() + ": " + e.getMessage());
-                        // Remove broken session
-                        sessions.remove(session);
-                        sessionToUser.remove(session);
-                    }
-                }
-            }
+            sendFrame(sessions, frameEncoder.encode(WsEnvelope.newMessage(messageDto)));
         }
     }
 
     public void sendNotificationToUser(Integer userId, String type, Object data) throws Exception {
         Set<WebSocketSession> sessions = userSessions.get(userId);
         if (sessions != null && !sessions.isEmpty()) {
-            Map<String, Object> wsMessage = new HashMap<>();
-            wsMessage.put("type", type);
-            wsMessage.put("data", data);
-            
-            String jsonMessage = objectMapper.writeValueAsString(wsMessage);
-            
-            // Send to all active sessions for this user
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    try {
-                        session.sendMessage(new TextMessage(jsonMessage));
-                    } catch (Exception e) {
-                        System.err.println("Failed to send notification to session " + session.getId() + ": " + e.getMessage());
-                        // Remove broken session
-                        sessions.remove(session);
-                        sessionToUser.remove(session);
-                    }
-                }
+            sendFrame(sessions, frameEncoder.encode(new WsEnvelope<>(type, data)));
+        }
+    }
+
+    // The encoded frame is immutable, so one instance is queued for every session
+    private void sendFrame(Set<WebSocketSession> sessions, TextMessage frame) {
+        for (WebSocketSession session : sessions) {
+            if (session.isOpen()) {
+                outboundDispatcher.send(session, frame);
             }
         }
     }
@@ -137,32 +135,38 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         return sessions.stream().anyMatch(WebSocketSession::isOpen);
     }
 
-    private void broadcastUserStatus(Integer userId, boolean isOnline) {
-        Map<String, Object> statusMessage = new HashMap<>();
-        statusMessage.put("type", isOnline ? "USER_ONLINE" : "USER_OFFLINE");
-        statusMessage.put("data", Map.of("userId", userId, "isOnline", isOnline));
+    private void schedulePresenceUpdate(Integer userId) {
+        // Only one flush per user is pending at a time; later changes are picked up when it runs
+        pendingPresence.computeIfAbsent(userId, k -> presenceScheduler.schedule(
+                () -> flushPresence(userId), PRESENCE_DEBOUNCE_MS, TimeUnit.MILLISECONDS));
+    }
 
+    private void flushPresence(Integer userId) {
+        pendingPresence.remove(userId);
+        boolean isOnline = isUserOnline(userId);
+        boolean wasOnline = announcedOnline.contains(userId);
+        // Reconnect/disconnect flapping inside the window ends in the announced state: nothing to send
+        if (isOnline == wasOnline) {
+            return;
+        }
+        broadcastUserStatus(userId, isOnline);
+        if (isOnline) {
+            announcedOnline.add(userId);
+        } else {
+            announcedOnline.remove(userId);
+            contactIndexService.evict(userId);
+        }
+    }
+
+    private void broadcastUserStatus(Integer userId, boolean isOnline) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(statusMessage);
+            TextMessage frame = frameEncoder.encode(WsEnvelope.userStatus(userId, isOnline));
             
-            // Broadcast to all active sessions of all users
-            for (Set<WebSocketSession> userSessionSet : userSessions.values()) {
-                for (WebSocketSession session : userSessionSet) {
-                    if (session.isOpen()) {
-                        try {
-                            session.sendMessage(new TextMessage(jsonMessage));
-                        } catch (Exception e) {
-                            System.err.println("Failed to broadcast to session " + session.getId() + ": " + e.getMessage());
-                            // Remove broken session
-                            Integer sessionUserId = sessionToUser.remove(session);
-                            if (sessionUserId != null) {
-                                Set<WebSocketSession> sessions = userSessions.get(sessionUserId);
-                                if (sessions != null) {
-                                    sessions.remove(session);
-                                }
-                            }
-                        }
-                    }
+            // Only the user's accepted contacts that are currently connected care about the change
+            for (Integer contactId : contactIndexService.getContactIds(userId)) {
+                Set<WebSocketSession> contactSessions = userSessions.get(contactId);
+                if (contactSessions != null) {
+                    sendFrame(contactSessions, frame);
                 }
             }
         } catch (Exception e) {
@@ -170,6 +174,11 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    @PreDestroy
+    public void shutdownPresenceScheduler() {
+        presenceScheduler.shutdownNow();
+    }
+
     private Integer getUserIdFromToken(WebSocketSession session) {
         try {
             String query = session.getUri().getQuery();
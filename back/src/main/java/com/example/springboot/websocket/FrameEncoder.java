@@ -0,0 +1,27 @@
+package com.example.springboot.websocket;
+
+import com.example.springboot.dto.WsEnvelope;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+/**
+ * 将推送内容一次性编码为文本帧
+ * 直接序列化为 String：发送文本帧时容器读取的是 String 载荷，从字节数组构造会在编码后再解码一次。
+ * 返回的 TextMessage 不可变，可以在同一用户的多个会话以及多个接收者之间共享
+ */
+@Component
+public class FrameEncoder {
+
+    private final ObjectWriter envelopeWriter;
+
+    public FrameEncoder(ObjectMapper objectMapper) {
+        this.envelopeWriter = objectMapper.writerFor(WsEnvelope.class);
+    }
+
+    public TextMessage encode(WsEnvelope<?> envelope) throws JsonProcessingException {
+        return new TextMessage(envelopeWriter.writeValueAsString(envelope));
+    }
+}
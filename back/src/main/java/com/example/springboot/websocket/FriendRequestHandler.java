@@ -57,11 +57,12 @@ public class FriendRequestHandler extends TextWebSocketHandler {
 
     public void notifyUser(Integer targetUserId, String message) throws Exception {        Set<WebSocketSession> sessions = userSessions.get(targetUserId);
         if (sessions != null && !sessions.isEmpty()) {
-            // Send to all active sessions for this user
+            // One immutable frame shared by all active sessions for this user
+            TextMessage frame = new TextMessage(message);
             for (WebSocketSession session : sessions) {
                 if (session.isOpen()) {
                     try {
-                        session.sendMessage(new TextMessage(message));
+                        session.sendMessage(frame);
                     } catch (Exception e) {
                         System.err.println("Failed to send friend notification: " + e.getMessage());
                         // Remove broken session
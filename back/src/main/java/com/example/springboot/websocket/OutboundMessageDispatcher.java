@@ -0,0 +1,147 @@
+package com.example.springboot.websocket;
+
+import com.example.springboot.config.WebSocketProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket 异步投递引擎
+ * 调用方只负责入队，真正的 session.sendMessage 由少量写线程完成，
+ * 慢客户端不会再阻塞 HTTP 请求线程或占用数据库连接
+ */
+@Component
+public class OutboundMessageDispatcher {
+
+    // 单次调度最多连续发送的消息数，避免一个繁忙会话长期占用写线程
+    private static final int MAX_BATCH = 32;
+
+    private final WebSocketProperties properties;
+    private final ExecutorService writers;
+    private final Map<String, SessionOutboundQueue> queues = new ConcurrentHashMap<>();
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+    // 已关闭会话的丢弃计数，保证统计值单调递增
+    private final AtomicLong droppedFromClosed = new AtomicLong();
+
+    public OutboundMessageDispatcher(WebSocketProperties properties) {
+        this.properties = properties;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, properties.getWriterThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "ws-writer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void register(WebSocketSession session) {
+        queues.putIfAbsent(session.getId(), new SessionOutboundQueue(session));
+    }
+
+    public void unregister(WebSocketSession session) {
+        SessionOutboundQueue queue = queues.remove(session.getId());
+        if (queue != null) {
+            droppedFromClosed.addAndGet(queue.dropped());
+            queue.close();
+        }
+    }
+
+    /**
+     * 将消息放入会话的出站队列，立即返回
+     */
+    public void send(WebSocketSession session, WebSocketMessage<?> message) {
+        SessionOutboundQueue queue = queues.get(session.getId());
+        if (queue == null) {
+            return;
+        }
+        switch (queue.offer(message, properties.getQueueCapacity(), properties.getOverflowPolicy())) {
+            case SCHEDULE -> writers.execute(() -> drain(queue));
+            case OVERFLOW -> {
+                disconnected.incrementAndGet();
+                queue.close();
+                writers.execute(() -> closeQuietly(session, CloseStatus.SESSION_NOT_RELIABLE));
+            }
+            default -> {
+                // QUEUED / CLOSED：无需额外处理
+            }
+        }
+    }
+
+    private void drain(SessionOutboundQueue queue) {
+        WebSocketSession session = queue.getSession();
+        for (int sent = 0; sent < MAX_BATCH; sent++) {
+            WebSocketMessage<?> next = queue.poll();
+            if (next == null) {
+                return;
+            }
+            try {
+                if (!session.isOpen()) {
+                    queue.close();
+                    return;
+                }
+                session.sendMessage(next);
+                delivered.incrementAndGet();
+            } catch (Exception e) {
+                System.err.println("Failed to send message to session " + session.getId() + ": " + e.getMessage());
+                failed.incrementAndGet();
+                queue.close();
+                closeQuietly(session, CloseStatus.SERVER_ERROR);
+                return;
+            }
+        }
+        // 还有剩余消息，让出线程后继续消费（消费权仍归本队列所有）
+        writers.execute(() -> drain(queue));
+    }
+
+    private void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            System.err.println("Failed to close session " + session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 出站队列统计信息
+     */
+    public Map<String, Object> getStats() {
+        int totalDepth = 0;
+        int maxDepth = 0;
+        long dropped = droppedFromClosed.get();
+        for (SessionOutboundQueue queue : queues.values()) {
+            int depth = queue.depth();
+            totalDepth += depth;
+            maxDepth = Math.max(maxDepth, depth);
+            dropped += queue.dropped();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", queues.size());
+        stats.put("queueCapacity", properties.getQueueCapacity());
+        stats.put("overflowPolicy", properties.getOverflowPolicy());
+        stats.put("totalQueueDepth", totalDepth);
+        stats.put("maxQueueDepth", maxDepth);
+        stats.put("delivered", delivered.get());
+        stats.put("failed", failed.get());
+        stats.put("dropped", dropped);
+        stats.put("disconnected", disconnected.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.springboot.websocket;
+
+import com.example.springboot.Enum.OverflowPolicy;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 单个 WebSocket 会话的有界出站队列
+ * 同一时刻最多只有一个写线程在消费该队列，从而保证该会话内的消息顺序
+ */
+class SessionOutboundQueue {
+
+    enum OfferResult {
+        // 已入队，已有写线程在消费
+        QUEUED,
+        // 已入队，调用方需要调度一次消费
+        SCHEDULE,
+        // 队列已满且策略为断开连接
+        OVERFLOW,
+        // 会话已关闭，消息被丢弃
+        CLOSED
+    }
+
+    private final WebSocketSession session;
+    private final Deque<WebSocketMessage<?>> pending = new ArrayDeque<>();
+    private boolean scheduled;
+    private boolean closed;
+    private long dropped;
+
+    SessionOutboundQueue(WebSocketSession session) {
+        this.session = session;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    synchronized OfferResult offer(WebSocketMessage<?> message, int capacity, OverflowPolicy policy) {
+        if (closed) {
+            return OfferResult.CLOSED;
+        }
+        if (pending.size() >= capacity) {
+            if (policy == OverflowPolicy.DISCONNECT) {
+                return OfferResult.OVERFLOW;
+            }
+            pending.pollFirst();
+            dropped++;
+        }
+        pending.offerLast(message);
+        if (scheduled) {
+            return OfferResult.QUEUED;
+        }
+        scheduled = true;
+        return OfferResult.SCHEDULE;
+    }
+
+    /**
+     * 取出下一条待发送消息；队列为空时释放消费权并返回 null
+     */
+    synchronized WebSocketMessage<?> poll() {
+        WebSocketMessage<?> next = pending.pollFirst();
+        if (next == null) {
+            scheduled = false;
+        }
+        return next;
+    }
+
+    synchronized void close() {
+        closed = true;
+        scheduled = false;
+        pending.clear();
+    }
+
+    synchronized int depth() {
+        return pending.size();
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+}
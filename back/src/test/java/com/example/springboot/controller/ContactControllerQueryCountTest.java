@@ -0,0 +1,126 @@
+package com.example.springboot.controller;
+
+import com.example.springboot.common.Result;
+import com.example.springboot.dto.AuthPrincipal;
+import com.example.springboot.entity.Contacts;
+import com.example.springboot.entity.User;
+import com.example.springboot.service.ContactIndexService;
+import com.example.springboot.service.ContactService;
+import com.example.springboot.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 好友接口的查询次数回归测试：当前用户 ID 取自 token 主体，请求不再按用户名查询 user 表，
+ * 每个接口只执行操作 contacts 表本身所需的 SQL
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ContactController.class, ContactService.class})
+class ContactControllerQueryCountTest {
+
+    @Autowired
+    private ContactController contactController;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private ContactIndexService contactIndexService;
+
+    private User alice;
+    private User bob;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        alice = entityManager.persist(user("alice"));
+        bob = entityManager.persist(user("bob"));
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void rejectRequestOnlyDeletesTheRequest() {
+        persistContact(bob, alice, "pending");
+        statistics.clear();
+
+        Result result = contactController.rejectRequest(principal(alice), Map.of("fromUserId", bob.getId()));
+
+        assertThat(result.getCode()).isEqualTo("200");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertNoUserLoads();
+    }
+
+    @Test
+    void acceptRequestOnlyWritesContacts() {
+        persistContact(bob, alice, "pending");
+        statistics.clear();
+
+        contactController.acceptRequest(principal(alice), Map.of("fromUserId", bob.getId()));
+
+        // UPDATE 原请求 + INSERT 反向记录
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertNoUserLoads();
+    }
+
+    @Test
+    void deleteFriendOnlyReadsAndDeletesContacts() {
+        persistContact(alice, bob, "accepted");
+        persistContact(bob, alice, "accepted");
+        statistics.clear();
+
+        Result result = contactController.deleteFriend(principal(alice), bob.getId());
+
+        assertThat(result.getCode()).isEqualTo("200");
+        // SELECT 好友关系 + DELETE 双向记录
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertNoUserLoads();
+    }
+
+    private void assertNoUserLoads() {
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getFetchCount()).isZero();
+    }
+
+    private void persistContact(User from, User to, String status) {
+        Contacts contact = new Contacts();
+        contact.setUserId(from.getId());
+        contact.setContactId(to.getId());
+        contact.setStatus(status);
+        contact.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(contact);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static AuthPrincipal principal(User user) {
+        return new AuthPrincipal(user.getId(), user.getUsername(), Long.MAX_VALUE);
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return user;
+    }
+}
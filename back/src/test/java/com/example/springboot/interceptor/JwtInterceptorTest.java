@@ -0,0 +1,60 @@
+package com.example.springboot.interceptor;
+
+import com.example.springboot.dto.AuthPrincipal;
+import com.example.springboot.service.TokenVerificationCache;
+import com.example.springboot.utils.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 请求身份只取自 token 中的 userId 声明：缺少该声明的 token 即使签名有效也返回 401
+ */
+class JwtInterceptorTest {
+
+    private final JwtInterceptor interceptor = new JwtInterceptor();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(interceptor, "tokenVerificationCache", new TokenVerificationCache());
+    }
+
+    @Test
+    void tokenWithUserIdIsAccepted() {
+        MockHttpServletRequest request = request(JwtUtil.createToken("alice", 7));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(request, response, new Object())).isTrue();
+        AuthPrincipal principal = (AuthPrincipal) request.getAttribute(AuthPrincipal.REQUEST_ATTRIBUTE);
+        assertThat(principal.getUserId()).isEqualTo(7);
+        assertThat(request.getAttribute("username")).isEqualTo("alice");
+    }
+
+    @Test
+    void tokenWithoutUserIdIsRejected() {
+        MockHttpServletRequest request = request(JwtUtil.createToken("alice"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(request, response, new Object())).isFalse();
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(request.getAttribute(AuthPrincipal.REQUEST_ATTRIBUTE)).isNull();
+    }
+
+    @Test
+    void missingHeaderIsRejected() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, new Object())).isFalse();
+        assertThat(response.getStatus()).isEqualTo(401);
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.FileType;
+import com.example.springboot.Enum.PermissionType;
+import com.example.springboot.config.FileProperties;
+import com.example.springboot.entity.User;
+import com.example.springboot.entity.filePermission;
+import com.example.springboot.entity.fileStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 文件权限判定缓存开启与关闭的吞吐量对比
+ * 同一组 (文件, 用户) 判定分别在 file.acl-cache-enabled 为 false / true 时各执行若干轮，
+ * 断言判定结果一致、预热后全部命中且开启缓存后吞吐量更高；失效行为见 FileAclCacheInvalidationTest
+ */
+@DataJpaTest
+@Import({FileAclCache.class, FileProperties.class})
+class FileAclCacheBenchmarkTest {
+
+    private static final int FILES = 200;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 50;
+
+    @Autowired
+    private FileAclCache fileAclCache;
+
+    @Autowired
+    private FileProperties fileProperties;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Integer ownerId;
+    private Integer readerId;
+    private final List<Long> fileIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ownerId = entityManager.persist(user("owner")).getId();
+        readerId = entityManager.persist(user("reader")).getId();
+        for (int i = 0; i < FILES; i++) {
+            fileStorage file = new fileStorage();
+            file.setUserId(ownerId);
+            file.setFileName("file" + i + ".txt");
+            file.setFileUrl("bench/" + i);
+            file.setFileType(FileType.DOCUMENT);
+            file.setFileSize(i);
+            file = entityManager.persist(file);
+            fileIds.add(file.getId());
+            entityManager.persist(permission(file, ownerId,
+                    PermissionType.maskOf(PermissionType.READ, PermissionType.DELETE, PermissionType.SHARE)));
+            // 一半文件共享给 reader
+            if (i % 2 == 0) {
+                entityManager.persist(permission(file, readerId, PermissionType.READ.bit()));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void compareThroughputWithCacheOffAndOn() {
+        fileProperties.setAclCacheEnabled(false);
+        List<Boolean> uncached = decideOnce();
+        double offOpsPerSecond = measure();
+
+        fileProperties.setAclCacheEnabled(true);
+        List<Boolean> cached = decideOnce();
+        Map<String, Object> before = fileAclCache.getStats();
+        double onOpsPerSecond = measure();
+        Map<String, Object> after = fileAclCache.getStats();
+
+        // 缓存不改变判定结果
+        assertThat(cached).isEqualTo(uncached);
+        // 预热后全部命中缓存
+        long hits = (long) after.get("hits") - (long) before.get("hits");
+        long misses = (long) after.get("misses") - (long) before.get("misses");
+        assertThat(misses).isZero();
+        assertThat(hits).isEqualTo((long) MEASURED_ROUNDS * FILES * 2 + (long) WARMUP_ROUNDS * FILES * 2);
+        // 关闭缓存时每次判定一条 SQL，开启后只是内存查找
+        assertThat(onOpsPerSecond).isGreaterThan(offOpsPerSecond);
+    }
+
+    private List<Boolean> decideOnce() {
+        List<Boolean> decisions = new ArrayList<>(FILES * 2);
+        for (Long fileId : fileIds) {
+            decisions.add(fileAclCache.hasAny(fileId, ownerId, PermissionType.DELETE));
+            decisions.add(fileAclCache.hasAny(fileId, readerId, PermissionType.READ));
+        }
+        return decisions;
+    }
+
+    private double measure() {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            decideOnce();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            decideOnce();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (double) MEASURED_ROUNDS * FILES * 2 / elapsed * 1_000_000_000L;
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return user;
+    }
+
+    private static filePermission permission(fileStorage file, Integer userId, int mask) {
+        filePermission permission = new filePermission();
+        permission.setFile(file);
+        permission.setUserId(userId);
+        permission.setPermissions(mask);
+        return permission;
+    }
+}
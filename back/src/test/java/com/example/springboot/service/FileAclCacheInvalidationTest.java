@@ -0,0 +1,158 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.FileType;
+import com.example.springboot.Enum.PermissionType;
+import com.example.springboot.config.FileProperties;
+import com.example.springboot.entity.User;
+import com.example.springboot.entity.filePermission;
+import com.example.springboot.entity.fileStorage;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 文件权限缓存的失效：共享与撤销在真实提交的事务中写入 file_acl 并发布 FileAccessChangedEvent，
+ * 提交后缓存的判定随之翻转；事务回滚时缓存和数据库都保持原状
+ */
+@DataJpaTest
+@Import({FileAclCache.class, FileProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FileAclCacheInvalidationTest {
+
+    @Autowired
+    private FileAclCache fileAclCache;
+
+    @Autowired
+    private FileProperties fileProperties;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private Integer ownerId;
+    private Integer readerId;
+    private Long fileId;
+
+    @BeforeEach
+    void setUp() {
+        fileProperties.setAclCacheEnabled(true);
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            User owner = user("acl-owner");
+            User reader = user("acl-reader");
+            entityManager.persist(owner);
+            entityManager.persist(reader);
+            fileStorage file = new fileStorage();
+            file.setUserId(owner.getId());
+            file.setFileName("shared.txt");
+            file.setFileUrl("acl/shared");
+            file.setFileType(FileType.DOCUMENT);
+            entityManager.persist(file);
+            entityManager.persist(permission(file, owner.getId(),
+                    PermissionType.maskOf(PermissionType.READ, PermissionType.DELETE, PermissionType.SHARE)));
+            ownerId = owner.getId();
+            readerId = reader.getId();
+            fileId = file.getId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        transaction.executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM filePermission p WHERE p.file.id = :fileId")
+                    .setParameter("fileId", fileId).executeUpdate();
+            entityManager.createQuery("DELETE FROM fileStorage f WHERE f.id = :fileId")
+                    .setParameter("fileId", fileId).executeUpdate();
+            entityManager.createQuery("DELETE FROM User u WHERE u.id IN :ids")
+                    .setParameter("ids", List.of(ownerId, readerId)).executeUpdate();
+        });
+    }
+
+    @Test
+    void committedGrantMakesCachedDenialAllow() {
+        assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isFalse();
+
+        transaction.executeWithoutResult(status -> {
+            entityManager.persist(permission(entityManager.find(fileStorage.class, fileId), readerId,
+                    PermissionType.READ.bit()));
+            eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, List.of(readerId)));
+            // 失效在提交之后才执行，提交前仍是缓存中的旧判定
+            assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isFalse();
+        });
+
+        assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isTrue();
+        assertThat(fileAclCache.hasAny(fileId, ownerId, PermissionType.SHARE)).isTrue();
+    }
+
+    @Test
+    void committedRevokeMakesCachedAllowDeny() {
+        transaction.executeWithoutResult(status -> entityManager.persist(
+                permission(entityManager.find(fileStorage.class, fileId), readerId, PermissionType.READ.bit())));
+        assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isTrue();
+        assertThat(fileAclCache.hasAny(fileId, ownerId, PermissionType.READ)).isTrue();
+
+        transaction.executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM filePermission p WHERE p.file.id = :fileId AND p.userId = :userId")
+                    .setParameter("fileId", fileId)
+                    .setParameter("userId", readerId)
+                    .executeUpdate();
+            eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, List.of(readerId)));
+        });
+
+        assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isFalse();
+        // 只清除受影响的用户，上传者的条目仍命中缓存
+        long hitsBefore = (long) fileAclCache.getStats().get("hits");
+        assertThat(fileAclCache.hasAny(fileId, ownerId, PermissionType.READ)).isTrue();
+        assertThat((long) fileAclCache.getStats().get("hits") - hitsBefore).isEqualTo(1);
+    }
+
+    @Test
+    void rolledBackGrantLeavesCacheUnchanged() {
+        assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isFalse();
+        long invalidationsBefore = (long) fileAclCache.getStats().get("invalidations");
+
+        transaction.executeWithoutResult(status -> {
+            entityManager.persist(permission(entityManager.find(fileStorage.class, fileId), readerId,
+                    PermissionType.READ.bit()));
+            eventPublisher.publishEvent(new FileAccessChangedEvent(fileId, List.of(readerId)));
+            status.setRollbackOnly();
+        });
+
+        assertThat(fileAclCache.getStats().get("invalidations")).isEqualTo(invalidationsBefore);
+        assertThat(fileAclCache.hasAny(fileId, readerId, PermissionType.READ)).isFalse();
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return user;
+    }
+
+    private static filePermission permission(fileStorage file, Integer userId, int mask) {
+        filePermission permission = new filePermission();
+        permission.setFile(file);
+        permission.setUserId(userId);
+        permission.setPermissions(mask);
+        return permission;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.springboot.service;
+
+import com.example.springboot.Enum.FileType;
+import com.example.springboot.Enum.PermissionType;
+import com.example.springboot.entity.fileStorage;
+import com.example.springboot.repository.FilePermissionRepository;
+import com.example.springboot.repository.FileStorageRepository;
+import com.example.springboot.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 并发预览大文件的负载测试：每个请求从获取响应到把完整内容写出，
+ * 线程分配的堆内存只与缓冲区大小有关，与文件大小无关（整文件读入内存时每个请求至少分配一个文件大小）
+ */
+class FileServiceDemoLoadTest {
+
+    private static final long FILE_SIZE = 128L * 1024 * 1024;
+    private static final int CONCURRENT_PREVIEWS = 8;
+    // 每个请求允许分配的堆内存上限，远小于文件大小
+    private static final long MAX_ALLOCATED_PER_REQUEST = FILE_SIZE / 16;
+
+    @TempDir
+    Path uploadDir;
+
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 稀疏文件，不占用实际磁盘空间
+        try (RandomAccessFile file = new RandomAccessFile(uploadDir.resolve("large.pdf").toFile(), "rw")) {
+            file.setLength(FILE_SIZE);
+        }
+        fileStorage meta = new fileStorage();
+        meta.setId(1L);
+        meta.setUserId(1);
+        meta.setFileName("large.pdf");
+        meta.setFileUrl("large.pdf");
+        meta.setFileType(FileType.DOCUMENT);
+        meta.setFileSize(FILE_SIZE);
+
+        FileStorageRepository fileStorageRepository = mock(FileStorageRepository.class);
+        when(fileStorageRepository.findById(1L)).thenReturn(Optional.of(meta));
+        FileAclCache fileAclCache = mock(FileAclCache.class);
+        when(fileAclCache.hasAny(anyLong(), anyInt(), any(PermissionType[].class))).thenReturn(true);
+
+        fileService = new FileService(fileStorageRepository, mock(FilePermissionRepository.class),
+                mock(UserRepository.class), new FileStreamService(), mock(ThumbnailService.class),
+                mock(BlobStore.class), mock(FileListService.class), fileAclCache,
+                mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(fileService, "uploadDir", uploadDir.toString());
+    }
+
+    @Test
+    void concurrentLargePreviewsKeepAllocationBounded() throws Exception {
+        assumeTrue(allocationMeasurable(), "thread allocation counters are not available on this JVM");
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_PREVIEWS);
+        try {
+            List<Future<long[]>> previews = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_PREVIEWS; i++) {
+                // 一半请求整文件预览，一半带 Range（PDF 阅读器的常见行为）
+                String range = i % 2 == 0 ? null : "bytes=0-";
+                previews.add(executor.submit(preview(range)));
+            }
+            for (Future<long[]> preview : previews) {
+                long[] result = preview.get();
+                assertThat(result[0]).isEqualTo(FILE_SIZE);
+                assertThat(result[1]).isLessThan(MAX_ALLOCATED_PER_REQUEST);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 返回 {写出的字节数, 本线程分配的堆内存字节数}
+    private Callable<long[]> preview(String range) {
+        return () -> {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/demo");
+            if (range != null) {
+                request.addHeader(HttpHeaders.RANGE, range);
+            }
+            long before = allocatedBytes();
+            ResponseEntity<?> response = fileService.demoFile(1L, 1, request);
+            CountingOutputMessage output = new CountingOutputMessage();
+            if (range == null) {
+                assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+                new ResourceHttpMessageConverter().write((Resource) response.getBody(), MediaType.APPLICATION_PDF, output);
+            } else {
+                assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+                new ResourceRegionHttpMessageConverter().write(response.getBody(), MediaType.APPLICATION_PDF, output);
+            }
+            long allocated = allocatedBytes() - before;
+            assertThat(response.getBody()).isInstanceOfAny(Resource.class, ResourceRegion.class);
+            return new long[]{output.count, allocated};
+        };
+    }
+
+    private static boolean allocationMeasurable() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 只计数不保存内容的响应体，模拟把数据写到 socket
+     */
+    private static final class CountingOutputMessage implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+        private long count;
+        private final OutputStream body = new OutputStream() {
+            @Override
+            public void write(int b) {
+                count++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                count += len;
+            }
+        };
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.ConversationDto;
+import com.example.springboot.entity.ConversationSummary;
+import com.example.springboot.entity.User;
+import com.example.springboot.websocket.ChatWebSocketHandler;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 对话列表的查询次数回归测试：无论有多少个对话，构建列表最多执行 3 条 SQL
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(MessageService.class)
+class MessageServiceQueryCountTest {
+
+    private static final int PEERS = 20;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private ConversationSummaryService conversationSummaryService;
+
+    @MockBean
+    private UnreadCounterCache unreadCounterCache;
+
+    @MockBean
+    private MessagePersistenceService messagePersistenceService;
+
+    @MockBean
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    private Integer ownerId;
+
+    @BeforeEach
+    void setUp() {
+        ownerId = entityManager.persist(user("owner")).getId();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < PEERS; i++) {
+            User peer = entityManager.persist(user("peer" + i));
+            ConversationSummary summary = new ConversationSummary();
+            summary.setOwnerId(ownerId);
+            summary.setPeerId(peer.getId());
+            summary.setLastMessageId((long) i + 1);
+            summary.setLastMessagePreview("message " + i);
+            summary.setLastMessageTime(now.minusMinutes(i));
+            summary.setUnreadCount(i);
+            entityManager.persist(summary);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void conversationListUsesAtMostThreeStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<ConversationDto> conversations = messageService.getConversations(ownerId);
+
+        assertThat(conversations).hasSize(PEERS);
+        assertThat(conversations.get(0).getFriendUsername()).isEqualTo("peer0");
+        assertThat(conversations.get(PEERS - 1).getUnreadCount()).isEqualTo(PEERS - 1L);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return user;
+    }
+}
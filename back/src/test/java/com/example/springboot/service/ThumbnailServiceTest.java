@@ -0,0 +1,67 @@
+package com.example.springboot.service;
+
+import com.example.springboot.config.FileProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 缩略图缓存超过上限时的淘汰：使用中的缩略图（刚生成或正在输出）不会被删除，release 之后才参与淘汰
+ */
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ThumbnailService thumbnailService;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileProperties properties = new FileProperties();
+        properties.setThumbnailDir(dir.resolve("thumbnails").toString());
+        // 上限小于任何一张缩略图，每次登记都会触发淘汰
+        properties.setThumbnailCacheMaxBytes(1);
+        thumbnailService = new ThumbnailService(properties);
+        thumbnailService.init();
+
+        source = dir.resolve("source.png");
+        ImageIO.write(new BufferedImage(512, 384, BufferedImage.TYPE_INT_RGB), "png", source.toFile());
+    }
+
+    @Test
+    void thumbnailsInUseSurviveEvictionUntilReleased() throws IOException {
+        Path first = thumbnailService.getThumbnail(source, "first", "source.png", 64);
+        Path second = thumbnailService.getThumbnail(source, "second", "source.png", 64);
+        assertThat(first).exists();
+        assertThat(second).exists();
+
+        thumbnailService.release(first);
+        assertThat(first).doesNotExist();
+        assertThat(second).exists();
+
+        thumbnailService.release(second);
+        assertThat(second).doesNotExist();
+    }
+
+    @Test
+    void cacheHitStaysInUseUntilEveryHolderReleases() throws IOException {
+        Path thumbnail = thumbnailService.getThumbnail(source, "shared", "source.png", 128);
+        Path again = thumbnailService.getThumbnail(source, "shared", "source.png", 128);
+        assertThat(again).isEqualTo(thumbnail);
+
+        thumbnailService.release(thumbnail);
+        assertThat(thumbnail).exists();
+
+        thumbnailService.release(again);
+        assertThat(Files.exists(thumbnail)).isFalse();
+    }
+}
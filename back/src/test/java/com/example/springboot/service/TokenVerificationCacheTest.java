@@ -0,0 +1,55 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.AuthPrincipal;
+import com.example.springboot.utils.JwtUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * token 校验缓存：首次校验未命中并解析，之后同一 token 命中缓存；无效 token 不进入缓存
+ */
+class TokenVerificationCacheTest {
+
+    private final TokenVerificationCache cache = new TokenVerificationCache();
+
+    @Test
+    void secondVerificationOfSameTokenIsAHit() {
+        String token = JwtUtil.createToken("alice", 7);
+
+        AuthPrincipal first = cache.verify(token);
+        AuthPrincipal second = cache.verify(token);
+
+        assertThat(first.getUserId()).isEqualTo(7);
+        assertThat(first.getUsername()).isEqualTo("alice");
+        assertThat(second).isSameAs(first);
+        Map<String, Object> stats = cache.getStats();
+        assertThat(stats.get("misses")).isEqualTo(1L);
+        assertThat(stats.get("hits")).isEqualTo(1L);
+        assertThat(stats.get("size")).isEqualTo(1);
+    }
+
+    @Test
+    void distinctTokensAreVerifiedSeparately() {
+        AuthPrincipal alice = cache.verify(JwtUtil.createToken("alice", 7));
+        AuthPrincipal bob = cache.verify(JwtUtil.createToken("bob", 8));
+
+        assertThat(alice.getUserId()).isEqualTo(7);
+        assertThat(bob.getUserId()).isEqualTo(8);
+        assertThat(cache.getStats().get("misses")).isEqualTo(2L);
+        assertThat(cache.getStats().get("hits")).isEqualTo(0L);
+    }
+
+    @Test
+    void invalidTokenIsRejectedAndNotCached() {
+        String token = JwtUtil.createToken("alice", 7);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThat(cache.verify(tampered)).isNull();
+        assertThat(cache.verify("not-a-jwt")).isNull();
+        assertThat(cache.getStats().get("size")).isEqualTo(0);
+        assertThat(cache.getStats().get("misses")).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.springboot.websocket;
+
+import com.example.springboot.config.JacksonConfig;
+import com.example.springboot.dto.MessageDto;
+import com.example.springboot.dto.WsEnvelope;
+import com.example.springboot.service.ContactIndexService;
+import com.example.springboot.utils.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 一条消息推送给同一用户的多个会话时只编码一次，所有会话共享同一个帧实例
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatWebSocketHandlerFanOutTest {
+
+    private static final int SESSIONS = 5;
+    // 会话表是静态的，使用不会与其他测试冲突的用户 ID
+    private static final int USER_ID = 900_001;
+
+    @Spy
+    private FrameEncoder frameEncoder = new FrameEncoder(new JacksonConfig().objectMapper());
+
+    @Mock
+    private OutboundMessageDispatcher outboundDispatcher;
+
+    @Mock
+    private ContactIndexService contactIndexService;
+
+    @InjectMocks
+    private ChatWebSocketHandler handler;
+
+    private final List<WebSocketSession> sessions = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (WebSocketSession session : sessions) {
+            handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+        handler.shutdownPresenceScheduler();
+    }
+
+    @Test
+    void oneEncodeFansOutToEverySession() throws Exception {
+        String token = JwtUtil.createToken("fan-out", USER_ID);
+        for (int i = 0; i < SESSIONS; i++) {
+            WebSocketSession session = mock(WebSocketSession.class);
+            lenient().when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/chat?token=" + token));
+            lenient().when(session.isOpen()).thenReturn(true);
+            handler.afterConnectionEstablished(session);
+            sessions.add(session);
+        }
+
+        MessageDto message = new MessageDto();
+        message.setId(1L);
+        message.setReceiverId(USER_ID);
+        message.setContent("hello");
+        handler.sendMessageToUser(USER_ID, message);
+
+        verify(frameEncoder, times(1)).encode(argThat(envelope -> WsEnvelope.NEW_MESSAGE.equals(envelope.getType())));
+        ArgumentCaptor<WebSocketSession> targets = ArgumentCaptor.forClass(WebSocketSession.class);
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(outboundDispatcher, times(SESSIONS)).send(targets.capture(), frames.capture());
+
+        assertThat(targets.getAllValues()).containsExactlyInAnyOrderElementsOf(sessions);
+        TextMessage first = frames.getAllValues().get(0);
+        assertThat(frames.getAllValues()).allSatisfy(frame -> assertThat(frame).isSameAs(first));
+        assertThat(first.getPayload()).contains("\"type\":\"NEW_MESSAGE\"").contains("\"content\":\"hello\"");
+        verify(outboundDispatcher, times(SESSIONS)).register(any());
+    }
+}
@@ -15,6 +15,9 @@ export const useChatStore = defineStore('chat', () => {
     const isConnected = ref(false)
     const typingUsers = ref(new Set())
     const messageUpdateTrigger = ref(0) // Helper to force UI updates
+    const olderCursor = ref(null) // Cursor for the next older page, null when history is complete
+    const isLoadingOlder = ref(false)
+    const hasOlderMessages = computed(() => olderCursor.value !== null)
 
     // Computed properties
     const currentUserId = computed(() => {
@@ -154,6 +157,64 @@ export const useChatStore = defineStore('chat', () => {
         }
     }
     
+    // Decrypt or restore message content for display
+    async function processMessages(rawMessages) {
+        const e2eeStore = useE2EEStore()
+        
+        // Process messages to decrypt encrypted ones
+        return await Promise.all(rawMessages.map(async (message) => {
+            // For all messages, first check localStorage
+            const originalContent = e2eeStore.getOriginalMessage(message.id?.toString())
+            
+            if (originalContent) {
+                return {
+                    ...message,
+                    content: originalContent,
+                    isDecrypted: false, // It's the original, not decrypted
+                    isEncrypted: message.isEncrypted || false,
+                    originalContent: originalContent,
+                    source: 'localStorage'
+                }
+            }
+            
+            // If not in localStorage and message is encrypted, try to decrypt
+            if (message.isEncrypted && (message.encryptedContent || message.content)) {
+                try {
+                    const decryptedContent = await e2eeStore.decryptMessage(
+                        message.encryptedContent || message.content,
+                        message.encryptedAESKey,
+                        message.iv
+                    )
+                    
+                    return {
+                        ...message,
+                        content: decryptedContent,
+                        isDecrypted: true,
+                        isEncrypted: true,
+                        originalEncrypted: message.encryptedContent || message.content,
+                        source: 'decrypted'
+                    }
+                } catch (err) {
+                    console.error('Failed to decrypt message:', err.message)
+                    // Show encrypted message with error indicator
+                    return {
+                        ...message,
+                        content: '[无法解密的消息]',
+                        isDecryptionError: true,
+                        originalEncrypted: message.encryptedContent || message.content,
+                        source: 'decryption_failed'
+                    }
+                }
+            }
+            
+            // Return regular message as-is
+            return {
+                ...message,
+                source: 'regular'
+            }
+        }))
+    }
+
     // Get conversation messages
     async function getConversationMessages(friendId) {
         try {
@@ -166,63 +227,12 @@ export const useChatStore = defineStore('chat', () => {
             })
             
             if (res.data.code === "200") {
-                const rawMessages = res.data.data
-                const e2eeStore = useE2EEStore()
-                
-                // Process messages to decrypt encrypted ones
-                const processedMessages = await Promise.all(rawMessages.map(async (message) => {
-                    // For all messages, first check localStorage
-                    const originalContent = e2eeStore.getOriginalMessage(message.id?.toString())
-                    
-                    if (originalContent) {
-                        return {
-                            ...message,
-                            content: originalContent,
-                            isDecrypted: false, // It's the original, not decrypted
-                            isEncrypted: message.isEncrypted || false,
-                            originalContent: originalContent,
-                            source: 'localStorage'
-                        }
-                    }
-                    
-                    // If not in localStorage and message is encrypted, try to decrypt
-                    if (message.isEncrypted && (message.encryptedContent || message.content)) {
-                        try {
-                            const decryptedContent = await e2eeStore.decryptMessage(
-                                message.encryptedContent || message.content,
-                                message.encryptedAESKey,
-                                message.iv
-                            )
-                            
-                            return {
-                                ...message,
-                                content: decryptedContent,
-                                isDecrypted: true,
-                                isEncrypted: true,
-                                originalEncrypted: message.encryptedContent || message.content,
-                                source: 'decrypted'
-                            }
-                        } catch (err) {
-                            console.error('Failed to decrypt message:', err.message)
-                            // Show encrypted message with error indicator
-                            return {
-                                ...message,
-                                content: '[无法解密的消息]',
-                                isDecryptionError: true,
-                                originalEncrypted: message.encryptedContent || message.content,
-                                source: 'decryption_failed'
-                            }
-                        }
-                    }
-                    
-                    // Return regular message as-is
-                    return {
-                        ...message,
-                        source: 'regular'
-                    }
-                }))
+                const page = res.data.data
+                const processedMessages = await processMessages(page.messages)
                 
                 messages.value = processedMessages
+                // Keep the cursor so older history can be loaded on scroll-to-top
+                olderCursor.value = page.hasMore ? page.nextCursor : null
                 // Mark messages as read
                 await markMessagesAsRead(friendId)
             }
@@ -234,6 +244,38 @@ export const useChatStore = defineStore('chat', () => {
         }
     }
     
+    // Load the next older page and prepend it; returns the number of messages added
+    async function loadOlderMessages(friendId) {
+        if (!olderCursor.value || isLoadingOlder.value) {
+            return 0
+        }
+        try {
+            isLoadingOlder.value = true
+            const token = sessionStorage.getItem('chatToken') || Cookies.get('token')
+            const res = await axios.get(`${import.meta.env.VITE_API_BASE}/messages/conversation/${friendId}`, {
+                params: { before: olderCursor.value },
+                headers: {
+                    Authorization: `Bearer ${token}`,
+                },
+            })
+            
+            if (res.data.code !== "200" || currentConversation.value?.friendId != friendId) {
+                return 0
+            }
+            const page = res.data.data
+            const loadedIds = new Set(messages.value.map(m => m.id))
+            const older = (await processMessages(page.messages)).filter(m => !loadedIds.has(m.id))
+            messages.value = [...older, ...messages.value]
+            olderCursor.value = page.hasMore ? page.nextCursor : null
+            return older.length
+        } catch (err) {
+            console.error('Failed to load older messages:', err)
+            throw err
+        } finally {
+            isLoadingOlder.value = false
+        }
+    }
+    
     // Send message
     async function sendMessage(receiverId, content, messageType = 'TEXT') {
         try {
@@ -624,6 +666,7 @@ export const useChatStore = defineStore('chat', () => {
             
             // Clear messages since this is a new conversation
             messages.value = []
+            olderCursor.value = null
             
             return newConversation
         } catch (err) {
@@ -649,6 +692,7 @@ export const useChatStore = defineStore('chat', () => {
         disconnectWebSocket()
         conversations.value = []
         messages.value = []
+        olderCursor.value = null
         currentConversation.value = null
         typingUsers.value.clear()
         // Clear stored token on cleanup
@@ -664,6 +708,8 @@ export const useChatStore = defineStore('chat', () => {
         isConnected,
         typingUsers,
         messageUpdateTrigger,
+        isLoadingOlder,
+        hasOlderMessages,
         
         // WebSocket methods
         connectWebSocket,
@@ -677,6 +723,7 @@ export const useChatStore = defineStore('chat', () => {
         // API methods
         getConversations,
         getConversationMessages,
+        loadOlderMessages,
         sendMessage,
         sendEncryptedMessage,
         handleEncryptedMessage,
@@ -92,6 +92,55 @@ CREATE TABLE IF NOT EXISTS `message` (
     INDEX `idx_updated_at` (`updated_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- ===================================================
+-- Table: message_id_sequence
+-- ===================================================
+-- Block allocator for message ids used by write-behind persistence
+CREATE TABLE IF NOT EXISTS `message_id_sequence` (
+    `name` VARCHAR(64) PRIMARY KEY,
+    `next_val` BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ===================================================
+-- Table: conversation_summary
+-- ===================================================
+-- One row per (owner, peer), maintained in the same transaction as each message write
+CREATE TABLE IF NOT EXISTS `conversation_summary` (
+    `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+    `owner_id` INT NOT NULL,
+    `peer_id` INT NOT NULL,
+    `last_message_id` BIGINT NOT NULL,
+    `last_message_preview` VARCHAR(255),
+    `last_message_time` DATETIME,
+    `unread_count` INT NOT NULL DEFAULT 0,
+    
+    FOREIGN KEY (`owner_id`) REFERENCES `user`(`id`) ON DELETE CASCADE,
+    FOREIGN KEY (`peer_id`) REFERENCES `user`(`id`) ON DELETE CASCADE,
+    UNIQUE KEY `unique_owner_peer` (`owner_id`, `peer_id`),
+    INDEX `idx_owner_last_time` (`owner_id`, `last_message_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Backfill summaries for databases that already contain messages
+INSERT IGNORE INTO `conversation_summary`
+    (`owner_id`, `peer_id`, `last_message_id`, `last_message_preview`, `last_message_time`, `unread_count`)
+SELECT 
+    t.owner_id,
+    t.peer_id,
+    m.id,
+    CASE WHEN m.message_type = 'ENCRYPTED' THEN '[加密消息]' ELSE LEFT(m.content, 200) END,
+    m.created_at,
+    (SELECT COUNT(*) FROM message u 
+     WHERE u.receiver_id = t.owner_id AND u.sender_id = t.peer_id AND u.is_read = FALSE)
+FROM (
+    SELECT owner_id, peer_id, MAX(id) AS last_id FROM (
+        SELECT sender_id AS owner_id, receiver_id AS peer_id, id FROM message
+        UNION ALL
+        SELECT receiver_id AS owner_id, sender_id AS peer_id, id FROM message
+    ) d
+    GROUP BY owner_id, peer_id
+) t
+JOIN message m ON m.id = t.last_id;
+
 -- ===================================================
 -- Table: file_storage
 -- ===================================================
@@ -102,32 +151,79 @@ CREATE TABLE IF NOT EXISTS `file_storage` (
     `file_url` TEXT NOT NULL,
     `file_type` ENUM('IMAGE', 'VIDEO', 'AUDIO', 'DOCUMENT', 'OTHER') NOT NULL,
     `file_size` BIGINT DEFAULT 0,
+    `content_hash` CHAR(64) NULL,
     `uploaded_at` DATETIME DEFAULT CURRENT_TIMESTAMP,
     
     FOREIGN KEY (`user_id`) REFERENCES `user`(`id`) ON DELETE CASCADE,
     INDEX `idx_user_id` (`user_id`),
     INDEX `idx_file_type` (`file_type`),
     INDEX `idx_uploaded_at` (`uploaded_at`),
-    INDEX `idx_file_size` (`file_size`)
+    INDEX `idx_file_size` (`file_size`),
+    INDEX `idx_content_hash` (`content_hash`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- ===================================================
--- Table: file_permission
+-- Table: file_blob
 -- ===================================================
-CREATE TABLE IF NOT EXISTS `file_permission` (
+-- Content-addressed blobs shared by file_storage rows with the same content_hash
+CREATE TABLE IF NOT EXISTS `file_blob` (
+    `hash` CHAR(64) PRIMARY KEY,
+    `size` BIGINT NOT NULL,
+    `ref_count` INT NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Migration: file_storage tables created before content-addressed storage lack content_hash and its index.
+-- MySQL has no ADD COLUMN IF NOT EXISTS, so each statement is built from information_schema and runs at most once
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'file_storage' AND COLUMN_NAME = 'content_hash') = 0,
+              'ALTER TABLE `file_storage` ADD COLUMN `content_hash` CHAR(64) NULL AFTER `file_size`',
+              'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'file_storage' AND INDEX_NAME = 'idx_content_hash') = 0,
+              'ALTER TABLE `file_storage` ADD INDEX `idx_content_hash` (`content_hash`)',
+              'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ===================================================
+-- Table: file_acl
+-- ===================================================
+-- One row per (file, user); permissions is a bitmask: 1 = READ, 2 = DELETE, 4 = SHARE
+CREATE TABLE IF NOT EXISTS `file_acl` (
     `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
     `file_id` BIGINT NOT NULL,
     `user_id` INT NOT NULL,
-    `permission` ENUM('READ', 'DELETE', 'SHARE') NOT NULL,
+    `permissions` INT NOT NULL DEFAULT 0,
     
     FOREIGN KEY (`file_id`) REFERENCES `file_storage`(`id`) ON DELETE CASCADE,
     FOREIGN KEY (`user_id`) REFERENCES `user`(`id`) ON DELETE CASCADE,
-    UNIQUE KEY `unique_file_user_permission` (`file_id`, `user_id`, `permission`),
-    INDEX `idx_file_id` (`file_id`),
-    INDEX `idx_user_id` (`user_id`),
-    INDEX `idx_permission` (`permission`)
+    UNIQUE KEY `unique_file_user` (`file_id`, `user_id`),
+    -- File listing reads a user's rows and joins file_storage by id without touching the table rows
+    INDEX `idx_user_file` (`user_id`, `file_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Migration: fold the legacy one-row-per-permission table into file_acl, then drop it
+CREATE TABLE IF NOT EXISTS `file_permission` (
+    `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+    `file_id` BIGINT NOT NULL,
+    `user_id` INT NOT NULL,
+    `permission` ENUM('READ', 'DELETE', 'SHARE') NOT NULL
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+INSERT INTO `file_acl` (`file_id`, `user_id`, `permissions`)
+SELECT `file_id`, `user_id`,
+       BIT_OR(CASE `permission` WHEN 'READ' THEN 1 WHEN 'DELETE' THEN 2 WHEN 'SHARE' THEN 4 ELSE 0 END)
+FROM `file_permission`
+GROUP BY `file_id`, `user_id`
+ON DUPLICATE KEY UPDATE `permissions` = `file_acl`.`permissions` | VALUES(`permissions`);
+
+DROP TABLE IF EXISTS `file_permission`;
+
 -- ===================================================
 -- Create Views for Common Queries
 -- ===================================================
@@ -264,6 +360,8 @@ DELIMITER ;
 
 -- Additional composite indexes for better query performance
 CREATE INDEX `idx_message_conversation_time` ON `message` (`sender_id`, `receiver_id`, `created_at`);
+-- Keyset pagination of conversation history seeks on (sender_id, receiver_id, id) per direction
+CREATE INDEX `idx_message_conversation_id` ON `message` (`sender_id`, `receiver_id`, `id`);
 CREATE INDEX `idx_message_unread_receiver` ON `message` (`receiver_id`, `is_read`, `created_at`);
 CREATE INDEX `idx_contacts_user_status` ON `contacts` (`user_id`, `status`);
 CREATE INDEX `idx_file_storage_user_type` ON `file_storage` (`user_id`, `file_type`);